@@ -0,0 +1,42 @@
+package com.chuan.concurrent;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Runs the benchmarks once for each thread count 1, 2, 4 and the number of available cores, so that our primitives and
+ * their JDK equivalents are reported side by side at every level of parallelism.
+ *
+ * Usage: java -jar target/benchmarks.jar [include regex]
+ *
+ * Every run also writes a JSON report to target/jmh-&lt;threads&gt;.json, which can be diffed between builds to catch
+ * regressions.
+ *
+ * @author hechuan
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        for (int threads : threadCounts()) {
+            // @Group benchmarks round this up to a whole number of groups, e.g. 4 threads are 2 producers and 2 consumers.
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    private static int[] threadCounts() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Arrays.stream(new int[] {1, 2, 4, cores}).distinct().sorted().toArray();
+    }
+}
@@ -0,0 +1,46 @@
+package com.chuan.concurrent;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads the number of context switches of the current process from /proc, used by benchmarks that care about wake-ups
+ * rather than raw throughput.
+ *
+ * @author hechuan
+ */
+public final class ContextSwitches {
+
+    private static final Path TASKS = Paths.get("/proc/self/task");
+
+    private ContextSwitches() {}
+
+    /**
+     * @return the voluntary and involuntary context switches of all live threads of this process, or -1 if /proc is
+     * not available on this platform
+     */
+    public static long total() {
+        if (!Files.isDirectory(TASKS)) { return -1; }
+        long total = 0;
+        try (DirectoryStream<Path> tasks = Files.newDirectoryStream(TASKS)) {
+            for (Path task : tasks) {
+                try {
+                    for (String line : Files.readAllLines(task.resolve("status"))) {
+                        if (line.startsWith("voluntary_ctxt_switches:")
+                                || line.startsWith("nonvoluntary_ctxt_switches:")) {
+                            total += Long.parseLong(line.substring(line.indexOf(':') + 1).trim());
+                        }
+                    }
+                } catch (IOException e) {
+                    // The thread exited while we were walking the directory.
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,94 @@
+package com.chuan.concurrent.blockingqueue;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Element throughput of {@link MyArrayBlockingQueue} when producers and consumers move elements in batches with
+ * {@link MyArrayBlockingQueue#offerAll} and {@link MyArrayBlockingQueue#pollBatch}, against one offer/poll per element
+ * (batch = 1). The "elements" counters give the number of elements moved per microsecond.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    private static final Integer ELEMENT = 1;
+
+    @Param({"1", "16", "256"})
+    public int batch;
+
+    private MyArrayBlockingQueue<Integer> queue;
+
+    @Setup
+    public void setUp() {
+        queue = new MyArrayBlockingQueue<>(4096, false);
+    }
+
+    @State(Scope.Thread)
+    public static class Buffer {
+        Integer[] elements;
+
+        @Setup
+        public void setUp(BatchBenchmark benchmark) {
+            elements = new Integer[benchmark.batch];
+            Arrays.fill(elements, ELEMENT);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Moved {
+        public long offered;
+        public long polled;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            offered = 0;
+            polled = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("batch")
+    @GroupThreads(1)
+    public void offer(Buffer buffer, Moved moved) {
+        if (batch == 1) {
+            if (queue.offer(ELEMENT)) { moved.offered++; }
+        } else {
+            moved.offered += queue.offerAll(buffer.elements, 0, batch);
+        }
+    }
+
+    @Benchmark
+    @Group("batch")
+    @GroupThreads(1)
+    public void poll(Buffer buffer, Moved moved) {
+        if (batch == 1) {
+            if (queue.poll() != null) { moved.polled++; }
+        } else {
+            moved.polled += queue.pollBatch(buffer.elements);
+        }
+    }
+}
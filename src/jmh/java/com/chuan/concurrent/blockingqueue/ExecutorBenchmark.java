@@ -0,0 +1,92 @@
+package com.chuan.concurrent.blockingqueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Task throughput of a {@link ThreadPoolExecutor} whose work queue is a {@link MyArrayBlockingQueue} or an
+ * {@link ArrayBlockingQueue}. Every benchmark thread submits a burst of tasks and waits for all of them to run, so the
+ * workers take from the queue while submitters keep offering to it. A full queue makes the submitter run the task
+ * itself.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+    private static final int TASKS = 256;
+
+    @Param({"MyArrayBlockingQueue", "ArrayBlockingQueue"})
+    public String impl;
+
+    @Param({"2", "4"})
+    public int workers;
+
+    @Param({"64", "1024"})
+    public int capacity;
+
+    /**
+     * Tokens of CPU work per task, see {@link Blackhole#consumeCPU(long)}.
+     */
+    @Param({"0", "256"})
+    public long work;
+
+    private ThreadPoolExecutor executor;
+
+    @Setup
+    public void setUp() {
+        BlockingQueue<Runnable> queue;
+        switch (impl) {
+            case "MyArrayBlockingQueue": queue = new MyArrayBlockingQueue<>(capacity); break;
+            case "ArrayBlockingQueue": queue = new ArrayBlockingQueue<>(capacity); break;
+            default: throw new IllegalArgumentException(impl);
+        }
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, queue,
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.prestartAllCoreThreads();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void submit() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(TASKS);
+        final long work = this.work;
+        final Runnable task = () -> {
+            Blackhole.consumeCPU(work);
+            done.countDown();
+        };
+        for (int i = 0; i < TASKS; i++) {
+            executor.execute(task);
+        }
+        done.await();
+    }
+}
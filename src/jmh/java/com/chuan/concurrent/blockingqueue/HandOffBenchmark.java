@@ -0,0 +1,73 @@
+package com.chuan.concurrent.blockingqueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronous hand-offs through {@link HandOffChannel} against {@link SynchronousQueue}, which allocates a node per
+ * waiting operation. HandOffChannelElimination has a pair of slots per CPU, to be run with several producers and
+ * consumers per group, e.g. -tg 4,4.
+ *
+ * Producers and consumers use a short timeout so that no thread stays blocked once the other side stops at the end of
+ * an iteration.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HandOffBenchmark {
+
+    private static final Integer ELEMENT = 1;
+    private static final long TIMEOUT_MILLIS = 10;
+
+    @Param({"HandOffChannel", "HandOffChannelElimination", "SynchronousQueue", "SynchronousQueueFair"})
+    public String impl;
+
+    private BoundedQueue<Object> channel;
+
+    @Setup
+    public void setUp() {
+        switch (impl) {
+            case "HandOffChannel": channel = new HandOffChannel<>(); break;
+            case "HandOffChannelElimination":
+                channel = new HandOffChannel<>(Runtime.getRuntime().availableProcessors(),
+                        HandOffChannel.DEFAULT_SPINS);
+                break;
+            case "SynchronousQueue": channel = new QueueBenchmark.JdkQueue(new SynchronousQueue<>(false)); break;
+            case "SynchronousQueueFair": channel = new QueueBenchmark.JdkQueue(new SynchronousQueue<>(true)); break;
+            default: throw new IllegalArgumentException(impl);
+        }
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean put() throws InterruptedException {
+        return channel.offer(ELEMENT, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Object take() throws InterruptedException {
+        return channel.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
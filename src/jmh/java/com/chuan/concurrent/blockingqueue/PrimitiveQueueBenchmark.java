@@ -0,0 +1,77 @@
+package com.chuan.concurrent.blockingqueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-off of distinct long ids through {@link LongArrayBlockingQueue} against {@link MyArrayBlockingQueue} of boxed
+ * Longs, which allocates one object per id outside the small-value cache. Run with "-prof gc" to see the allocation
+ * rate next to the throughput.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrimitiveQueueBenchmark {
+
+    private static final long TIMEOUT_MILLIS = 10;
+    private static final long MISSING = -1L;
+
+    @Param({"LongArrayBlockingQueue", "MyArrayBlockingQueue"})
+    public String impl;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private LongArrayBlockingQueue longQueue;
+    private MyArrayBlockingQueue<Long> boxedQueue;
+
+    @Setup
+    public void setUp() {
+        switch (impl) {
+            case "LongArrayBlockingQueue": longQueue = new LongArrayBlockingQueue(capacity, false, MISSING); break;
+            case "MyArrayBlockingQueue": boxedQueue = new MyArrayBlockingQueue<>(capacity); break;
+            default: throw new IllegalArgumentException(impl);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Ids {
+        long next = 1L << 20;
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean offer(Ids ids) throws InterruptedException {
+        final long id = ids.next++;
+        if (longQueue != null) { return longQueue.offer(id, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS); }
+        return boxedQueue.offer(id, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public long poll() throws InterruptedException {
+        if (longQueue != null) { return longQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS); }
+        Long id = boxedQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        return id == null ? MISSING : id;
+    }
+}
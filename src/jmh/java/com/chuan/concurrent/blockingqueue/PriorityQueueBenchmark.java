@@ -0,0 +1,99 @@
+package com.chuan.concurrent.blockingqueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-off of randomly prioritised elements through {@link MyPriorityBlockingQueue} against
+ * {@link PriorityBlockingQueue}, which needs the priority inside a comparable element and so allocates one wrapper
+ * per offer. Run with "-prof gc" to see the allocation rate next to the throughput.
+ *
+ * PriorityBlockingQueue is unbounded, so its producers check the size first to keep both queues at the same depth.
+ * A rejected offer returns at once and still counts as an operation, so compare the poll rates.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PriorityQueueBenchmark {
+
+    private static final Object ELEMENT = new Object();
+    private static final long TIMEOUT_MILLIS = 10;
+
+    @Param({"MyPriorityBlockingQueue", "PriorityBlockingQueue"})
+    public String impl;
+
+    @Param({"16", "1024"})
+    public int capacity;
+
+    /**
+     * Number of distinct priorities, the fewer there are the more ties the queues have to keep in FIFO order.
+     */
+    @Param({"8", "1000000"})
+    public int priorities;
+
+    private MyPriorityBlockingQueue<Object> myQueue;
+    private PriorityBlockingQueue<Prioritized> jdkQueue;
+
+    @Setup
+    public void setUp() {
+        switch (impl) {
+            case "MyPriorityBlockingQueue": myQueue = new MyPriorityBlockingQueue<>(capacity); break;
+            case "PriorityBlockingQueue": jdkQueue = new PriorityBlockingQueue<>(capacity); break;
+            default: throw new IllegalArgumentException(impl);
+        }
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean offer() throws InterruptedException {
+        final long priority = ThreadLocalRandom.current().nextInt(priorities);
+        if (myQueue != null) { return myQueue.offer(priority, ELEMENT, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS); }
+        return jdkQueue.size() < capacity && jdkQueue.offer(new Prioritized(priority, ELEMENT));
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Object poll() throws InterruptedException {
+        if (myQueue != null) { return myQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS); }
+        Prioritized p = jdkQueue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        return p == null ? null : p.element;
+    }
+
+    static final class Prioritized implements Comparable<Prioritized> {
+
+        final long priority;
+        final Object element;
+
+        Prioritized(long priority, Object element) {
+            this.priority = priority;
+            this.element = element;
+        }
+
+        @Override
+        public int compareTo(Prioritized o) {
+            return Long.compare(priority, o.priority);
+        }
+    }
+}
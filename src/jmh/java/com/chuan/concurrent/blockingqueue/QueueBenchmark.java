@@ -0,0 +1,135 @@
+package com.chuan.concurrent.blockingqueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the multi-producer, multi-consumer queues of this package with {@link ArrayBlockingQueue} under a
+ * producer/consumer hand-off. Reports throughput and sampled latency percentiles of the timed offer and poll
+ * separately.
+ *
+ * The queue is shared by every group, so running with N threads puts N/2 producers and N/2 consumers on one queue.
+ * Producers and consumers use a short timeout so that no thread stays blocked once the other side stops at the end of
+ * an iteration.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueueBenchmark {
+
+    private static final Integer ELEMENT = 1;
+    private static final long TIMEOUT_MILLIS = 10;
+
+    /**
+     * MyArrayBlockingQueueStats has statistics enabled, which shows their cost against MyArrayBlockingQueue.
+     * MyArrayBlockingQueueElastic starts at 1/16 of the capacity and grows to it on demand.
+     */
+    @Param({"MyArrayBlockingQueue", "MyArrayBlockingQueueStats", "MyArrayBlockingQueueElastic",
+            "MyTwoLockArrayBlockingQueue", "MpmcRingQueue", "ArrayBlockingQueue"})
+    public String impl;
+
+    @Param({"16", "1024"})
+    public int capacity;
+
+    /**
+     * Work done by each side per element, in {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({"0", "64"})
+    public int work;
+
+    private BoundedQueue<Object> queue;
+
+    @Setup
+    public void setUp() {
+        queue = newQueue(impl, capacity);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean offer() throws InterruptedException {
+        Blackhole.consumeCPU(work);
+        return queue.offer(ELEMENT, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Object poll() throws InterruptedException {
+        Object e = queue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        Blackhole.consumeCPU(work);
+        return e;
+    }
+
+    static BoundedQueue<Object> newQueue(String impl, int capacity) {
+        switch (impl) {
+            case "MyArrayBlockingQueue": return new MyArrayBlockingQueue<>(capacity, false);
+            case "MyArrayBlockingQueueStats": {
+                MyArrayBlockingQueue<Object> queue = new MyArrayBlockingQueue<>(capacity, false);
+                queue.enableStats();
+                return queue;
+            }
+            case "MyArrayBlockingQueueElastic":
+                return new MyArrayBlockingQueue<>(Math.max(1, capacity / 16), capacity, false);
+            case "MyTwoLockArrayBlockingQueue": return new MyTwoLockArrayBlockingQueue<>(capacity, false);
+            case "MpmcRingQueue": return new MpmcRingQueue<>(capacity);
+            case "MpscRingQueue": return new MpscRingQueue<>(capacity);
+            case "SpscRingQueue": return new SpscRingQueue<>(capacity);
+            case "ArrayBlockingQueue": return new JdkQueue(new ArrayBlockingQueue<>(capacity, false));
+            default: throw new IllegalArgumentException(impl);
+        }
+    }
+
+    /**
+     * Presents a JDK {@link BlockingQueue} as a {@link BoundedQueue}.
+     */
+    static final class JdkQueue implements BoundedQueue<Object> {
+
+        private final BlockingQueue<Object> queue;
+
+        JdkQueue(BlockingQueue<Object> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public boolean offer(Object e) {
+            return queue.offer(e);
+        }
+
+        @Override
+        public boolean offer(Object e, long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.offer(e, timeout, unit);
+        }
+
+        @Override
+        public Object poll() {
+            return queue.poll();
+        }
+
+        @Override
+        public Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return queue.poll(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.chuan.concurrent.blockingqueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-producer/single-consumer pipelines: every group of one producer and one consumer has a queue of its own, so
+ * all the queues, including {@link SpscRingQueue}, can be compared at any thread count.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class RingQueueBenchmark {
+
+    private static final Integer ELEMENT = 1;
+    private static final long TIMEOUT_MILLIS = 10;
+
+    @Param({"SpscRingQueue", "MpscRingQueue", "MpmcRingQueue", "MyArrayBlockingQueue", "ArrayBlockingQueue"})
+    public String impl;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private BoundedQueue<Object> queue;
+
+    @Setup
+    public void setUp() {
+        queue = QueueBenchmark.newQueue(impl, capacity);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean offer() throws InterruptedException {
+        return queue.offer(ELEMENT, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public Object poll() throws InterruptedException {
+        return queue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
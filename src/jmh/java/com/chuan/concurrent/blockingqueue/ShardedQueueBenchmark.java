@@ -0,0 +1,78 @@
+package com.chuan.concurrent.blockingqueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-in of many producers to few consumers through {@link ShardedBlockingQueue} in both orderings, against a single
+ * {@link MyArrayBlockingQueue} and {@link ArrayBlockingQueue} of the same capacity. The sharded queues get a shard per
+ * available CPU, so to see how throughput scales with the core count, run the same producer/consumer mix on growing
+ * CPU sets, e.g. taskset -c 0-3 java -jar target/benchmarks.jar ShardedQueueBenchmark -tg 32,4, then with -c 0-7,
+ * 0-15 and so on.
+ *
+ * Producers and consumers use a short timeout so that no thread stays blocked once the other side stops at the end of
+ * an iteration.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedQueueBenchmark {
+
+    private static final Integer ELEMENT = 1;
+    private static final long TIMEOUT_MILLIS = 10;
+
+    @Param({"ShardedRelaxed", "ShardedPerProducer", "MyArrayBlockingQueue", "ArrayBlockingQueue"})
+    public String impl;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private BoundedQueue<Object> queue;
+
+    @Setup
+    public void setUp() {
+        final int shards = Math.min(capacity, Runtime.getRuntime().availableProcessors());
+        switch (impl) {
+            case "ShardedRelaxed":
+                queue = new ShardedBlockingQueue<>(capacity, shards, ShardedBlockingQueue.Ordering.RELAXED_FIFO);
+                break;
+            case "ShardedPerProducer":
+                queue = new ShardedBlockingQueue<>(capacity, shards, ShardedBlockingQueue.Ordering.PER_PRODUCER_FIFO);
+                break;
+            default: queue = QueueBenchmark.newQueue(impl, capacity);
+        }
+    }
+
+    @Benchmark
+    @Group("fanIn")
+    @GroupThreads(8)
+    public boolean offer() throws InterruptedException {
+        return queue.offer(ELEMENT, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Benchmark
+    @Group("fanIn")
+    @GroupThreads(2)
+    public Object poll() throws InterruptedException {
+        return queue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
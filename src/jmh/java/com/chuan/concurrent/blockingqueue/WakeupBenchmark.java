@@ -0,0 +1,177 @@
+package com.chuan.concurrent.blockingqueue;
+
+import com.chuan.concurrent.ContextSwitches;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One producer feeding 64 consumers that are mostly parked in a timed poll, the case where waking every waiter on each
+ * element hurts most. {@code SignalAll} is the previous behaviour of {@link MyArrayBlockingQueue}, kept here as the
+ * baseline.
+ *
+ * Besides the throughput, the "contextSwitches" counter reports the context switches of the process (read from /proc,
+ * so Linux only; elsewhere it stays 0) and the "elements" counter the elements offered; JMH sums both over the
+ * iterations, their ratio is the context switches per element.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WakeupBenchmark {
+
+    private static final Integer ELEMENT = 1;
+    private static final long TIMEOUT_MILLIS = 10;
+
+    @Param({"MyArrayBlockingQueue", "SignalAll", "ArrayBlockingQueue"})
+    public String impl;
+
+    private BoundedQueue<Object> queue;
+
+    @Setup
+    public void setUp() {
+        queue = "SignalAll".equals(impl) ? new SignalAllQueue(1024) : QueueBenchmark.newQueue(impl, 1024);
+    }
+
+    /**
+     * Held by the single producer only, so the counters are not summed over the consumers. JMH reads them after the
+     * iteration tear-down has filled them in.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ContextSwitchCounters {
+
+        public long contextSwitches;
+        public long elements;
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void start() {
+            contextSwitches = 0;
+            elements = 0;
+            start = ContextSwitches.total();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() {
+            long now = ContextSwitches.total();
+            if (now < 0 || start < 0) { return; }
+            contextSwitches = now - start;
+        }
+    }
+
+    @Benchmark
+    @Group("wakeup")
+    @GroupThreads(1)
+    public boolean offer(ContextSwitchCounters counters) throws InterruptedException {
+        if (!queue.offer(ELEMENT, TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) { return false; }
+        counters.elements++;
+        return true;
+    }
+
+    @Benchmark
+    @Group("wakeup")
+    @GroupThreads(64)
+    public Object poll() throws InterruptedException {
+        return queue.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The single-lock queue as it was before the targeted signals: every enqueue wakes every consumer and every
+     * dequeue wakes every producer.
+     */
+    static final class SignalAllQueue implements BoundedQueue<Object> {
+
+        private final Object[] data;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private int count;
+        private int putIndex;
+        private int takeIndex;
+
+        SignalAllQueue(int size) {
+            data = new Object[size];
+        }
+
+        @Override
+        public boolean offer(Object e) {
+            try {
+                return offer(e, 0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public boolean offer(Object e, long timeout, TimeUnit unit) throws InterruptedException {
+            long nanoTimes = unit.toNanos(timeout);
+            lock.lockInterruptibly();
+            try {
+                while (count == data.length) {
+                    if (nanoTimes <= 0L) { return false; }
+                    nanoTimes = notFull.awaitNanos(nanoTimes);
+                }
+                data[putIndex++] = e;
+                if (putIndex == data.length) { putIndex = 0; }
+                count++;
+                notEmpty.signalAll();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Object poll() {
+            try {
+                return poll(0, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
+        @Override
+        public Object poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanoTimes = unit.toNanos(timeout);
+            lock.lockInterruptibly();
+            try {
+                while (count == 0) {
+                    if (nanoTimes <= 0L) { return null; }
+                    nanoTimes = notEmpty.awaitNanos(nanoTimes);
+                }
+                Object e = data[takeIndex];
+                data[takeIndex++] = null;
+                if (takeIndex == data.length) { takeIndex = 0; }
+                count--;
+                notFull.signalAll();
+                return e;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
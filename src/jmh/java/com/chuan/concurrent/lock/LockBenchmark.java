@@ -0,0 +1,156 @@
+package com.chuan.concurrent.lock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compares {@link MyLock} with {@link ReentrantLock}, in unfair and fair mode, and {@link MySharedLock} with a
+ * {@link Semaphore} of the same permits. Reports throughput and sampled latency percentiles of a lock/unlock pair around a critical section.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockBenchmark {
+
+    /**
+     * MySharedLock and Semaphore admit 2 holders at a time, MyLock and ReentrantLock admit 1. The NoSpin variants
+     * park right after the first failed CAS. The Stats variants have contention statistics enabled, which shows the
+     * cost of the instrumentation against the plain variants.
+     */
+    @Param({"MyLock", "MyLockNoSpin", "MyLockStats", "ReentrantLock", "MyLockFair", "ReentrantLockFair",
+            "MySharedLock", "MySharedLockNoSpin", "MySharedLockStats", "Semaphore"})
+    public String impl;
+
+    /**
+     * Contention level: threads are spread over this many independent locks, 1 means every thread fights for the
+     * same lock.
+     */
+    @Param({"1", "4"})
+    public int locks;
+
+    /**
+     * Critical-section size, in {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({"0", "64", "1024"})
+    public int work;
+
+    private Lock[] lockArray;
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        lockArray = new Lock[locks];
+        for (int i = 0; i < locks; i++) {
+            lockArray[i] = newLock(impl);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        Lock lock;
+
+        @Setup
+        public void setUp(LockBenchmark benchmark) {
+            lock = benchmark.lockArray[benchmark.threadIndex.getAndIncrement() % benchmark.locks];
+        }
+    }
+
+    @Benchmark
+    public void lockUnlock(ThreadState state) {
+        final Lock lock = state.lock;
+        lock.lock();
+        try {
+            Blackhole.consumeCPU(work);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    static Lock newLock(String impl) {
+        switch (impl) {
+            case "MyLock": return new MyLock();
+            case "ReentrantLock": return new ReentrantLock();
+            case "MyLockFair": return new MyLock(true);
+            case "ReentrantLockFair": return new ReentrantLock(true);
+            case "MyLockNoSpin": return new MyLock(false, 0);
+            case "MySharedLock": return new MySharedLock();
+            case "MySharedLockNoSpin": return new MySharedLock(2, 0);
+            case "MyLockStats": {
+                MyLock lock = new MyLock();
+                lock.enableStats();
+                return lock;
+            }
+            case "MySharedLockStats": {
+                MySharedLock lock = new MySharedLock();
+                lock.enableStats();
+                return lock;
+            }
+            case "Semaphore": return new SemaphoreLock(2);
+            default: throw new IllegalArgumentException(impl);
+        }
+    }
+
+    /**
+     * Presents a {@link Semaphore} as a {@link Lock} so it can be driven by the same benchmark as the locks.
+     */
+    static final class SemaphoreLock implements Lock {
+
+        private final Semaphore semaphore;
+
+        SemaphoreLock(int permits) {
+            semaphore = new Semaphore(permits);
+        }
+
+        @Override
+        public void lock() {
+            semaphore.acquireUninterruptibly();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            semaphore.acquire();
+        }
+
+        @Override
+        public boolean tryLock() {
+            return semaphore.tryAcquire();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return semaphore.tryAcquire(time, unit);
+        }
+
+        @Override
+        public void unlock() {
+            semaphore.release();
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
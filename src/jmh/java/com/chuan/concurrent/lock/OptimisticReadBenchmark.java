@@ -0,0 +1,154 @@
+package com.chuan.concurrent.lock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Readers of a two-field snapshot: {@link MyStampedLock} optimistic reads against its own read lock,
+ * {@link MySharedLock} (one permit per reader, all permits to write) and the JDK {@link StampedLock}. Meant to be run
+ * at high thread counts, e.g. {@code -t 64}; every thread writes once every {@code writeEvery} operations.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class OptimisticReadBenchmark {
+
+    private static final int PERMITS = 1 << 10;
+
+    @Param({"MyStampedLockOptimistic", "MyStampedLockRead", "MySharedLock", "StampedLockOptimistic"})
+    public String impl;
+
+    /**
+     * 0 means read-only.
+     */
+    @Param({"0", "10000"})
+    public int writeEvery;
+
+    private MyStampedLock myStampedLock;
+    private MySharedLock mySharedLock;
+    private StampedLock stampedLock;
+    private int x;
+    private int y;
+
+    @Setup
+    public void setUp() {
+        myStampedLock = new MyStampedLock();
+        mySharedLock = new MySharedLock(PERMITS);
+        stampedLock = new StampedLock();
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        int operations;
+    }
+
+    @Benchmark
+    public int read(Counter counter) {
+        if (writeEvery > 0 && ++counter.operations % writeEvery == 0) {
+            write();
+            return 0;
+        }
+        switch (impl) {
+            case "MyStampedLockOptimistic": return optimisticRead();
+            case "MyStampedLockRead": return readLockRead();
+            case "MySharedLock": return sharedLockRead();
+            case "StampedLockOptimistic": return jdkOptimisticRead();
+            default: throw new IllegalArgumentException(impl);
+        }
+    }
+
+    private int optimisticRead() {
+        long stamp = myStampedLock.tryOptimisticRead();
+        int a = x;
+        int b = y;
+        if (!myStampedLock.validate(stamp)) {
+            stamp = myStampedLock.readLock();
+            try {
+                a = x;
+                b = y;
+            } finally {
+                myStampedLock.unlockRead(stamp);
+            }
+        }
+        return a + b;
+    }
+
+    private int readLockRead() {
+        long stamp = myStampedLock.readLock();
+        try {
+            return x + y;
+        } finally {
+            myStampedLock.unlockRead(stamp);
+        }
+    }
+
+    private int sharedLockRead() {
+        mySharedLock.lock();
+        try {
+            return x + y;
+        } finally {
+            mySharedLock.unlock();
+        }
+    }
+
+    private int jdkOptimisticRead() {
+        long stamp = stampedLock.tryOptimisticRead();
+        int a = x;
+        int b = y;
+        if (!stampedLock.validate(stamp)) {
+            stamp = stampedLock.readLock();
+            try {
+                a = x;
+                b = y;
+            } finally {
+                stampedLock.unlockRead(stamp);
+            }
+        }
+        return a + b;
+    }
+
+    private void write() {
+        switch (impl) {
+            case "MyStampedLockOptimistic":
+            case "MyStampedLockRead": {
+                long stamp = myStampedLock.writeLock();
+                x++;
+                y++;
+                myStampedLock.unlockWrite(stamp);
+                break;
+            }
+            case "MySharedLock": {
+                mySharedLock.acquire(PERMITS);
+                x++;
+                y++;
+                mySharedLock.release(PERMITS);
+                break;
+            }
+            default: {
+                long stamp = stampedLock.writeLock();
+                x++;
+                y++;
+                stampedLock.unlockWrite(stamp);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.chuan.concurrent.lock;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Barrier rounds of {@link MyPhaser} against {@link Phaser}, each flat and as a tree with {@link #FAN_OUT} parties or
+ * children per phaser. The benchmark thread is party 0 and the other parties run on background threads that arrive
+ * and wait in a loop, so one operation is one phase in which all parties arrived.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class PhaserBenchmark {
+
+    private static final int FAN_OUT = 16;
+
+    @Param({"myPhaser", "myPhaserTree", "phaser", "phaserTree"})
+    public String impl;
+
+    @Param({"256", "1024"})
+    public int parties;
+
+    /** Party index to the phase after its arrival. */
+    private IntUnaryOperator arriveAndAwait;
+    private Runnable terminate;
+    private Thread[] others;
+
+    @Setup
+    public void setUp() {
+        switch (impl) {
+            case "myPhaser": useMyPhasers(fill(new MyPhaser(parties))); break;
+            case "myPhaserTree": useMyPhasers(MyPhaser.tree(parties, FAN_OUT)); break;
+            case "phaser": usePhasers(fill(new Phaser(parties))); break;
+            case "phaserTree": usePhasers(phaserTree()); break;
+            default: throw new IllegalArgumentException(impl);
+        }
+        final ThreadFactory factory = MyThreadFactory.builder().name("party-").daemon(true).build();
+        others = new Thread[parties - 1];
+        for (int i = 0; i < others.length; i++) {
+            final int party = i + 1;
+            others[i] = factory.newThread(() -> {
+                while (arriveAndAwait.applyAsInt(party) >= 0) {
+                    // Until the phaser terminates at the end of the trial.
+                }
+            });
+            others[i].start();
+        }
+    }
+
+    private MyPhaser[] fill(MyPhaser phaser) {
+        final MyPhaser[] leaves = new MyPhaser[parties];
+        Arrays.fill(leaves, phaser);
+        return leaves;
+    }
+
+    private Phaser[] fill(Phaser phaser) {
+        final Phaser[] leaves = new Phaser[parties];
+        Arrays.fill(leaves, phaser);
+        return leaves;
+    }
+
+    private void useMyPhasers(MyPhaser[] leaves) {
+        arriveAndAwait = party -> leaves[party].arriveAndAwaitAdvance();
+        terminate = leaves[0]::forceTermination;
+    }
+
+    private void usePhasers(Phaser[] leaves) {
+        arriveAndAwait = party -> leaves[party].arriveAndAwaitAdvance();
+        terminate = leaves[0]::forceTermination;
+    }
+
+    /**
+     * The same shape as {@link MyPhaser#tree(int, int)}, with {@link Phaser}'s own tiering.
+     */
+    private Phaser[] phaserTree() {
+        final Phaser[] leaves = new Phaser[parties];
+        attach(new Phaser(), leaves, 0, parties);
+        return leaves;
+    }
+
+    private static void attach(Phaser node, Phaser[] leaves, int from, int to) {
+        final int n = to - from;
+        if (n <= FAN_OUT) {
+            node.bulkRegister(n);
+            Arrays.fill(leaves, from, to, node);
+            return;
+        }
+        final int size = (n + FAN_OUT - 1) / FAN_OUT;
+        for (int start = from; start < to; start += size) {
+            attach(new Phaser(node), leaves, start, Math.min(start + size, to));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        terminate.run();
+        for (Thread t : others) {
+            t.join();
+        }
+    }
+
+    @Benchmark
+    public int round() {
+        return arriveAndAwait.applyAsInt(0);
+    }
+}
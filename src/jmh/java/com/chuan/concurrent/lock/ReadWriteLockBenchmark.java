@@ -0,0 +1,78 @@
+package com.chuan.concurrent.lock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A read-mostly table guarded by {@link MyReadWriteLock}, with and without reader bias, against
+ * {@link ReentrantReadWriteLock}. Every thread writes once every {@code writeEvery} operations and reads otherwise.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadWriteLockBenchmark {
+
+    @Param({"MyReadWriteLock", "MyReadWriteLockBiased", "ReentrantReadWriteLock"})
+    public String impl;
+
+    /**
+     * 0 means read-only.
+     */
+    @Param({"0", "100", "10000"})
+    public int writeEvery;
+
+    private ReadWriteLock lock;
+    private final long[] table = new long[16];
+
+    @Setup
+    public void setUp() {
+        switch (impl) {
+            case "MyReadWriteLock": lock = new MyReadWriteLock(); break;
+            case "MyReadWriteLockBiased": lock = new MyReadWriteLock(true); break;
+            case "ReentrantReadWriteLock": lock = new ReentrantReadWriteLock(); break;
+            default: throw new IllegalArgumentException(impl);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Counter {
+        int operations;
+    }
+
+    @Benchmark
+    public long readMostly(Counter counter) {
+        if (writeEvery > 0 && ++counter.operations % writeEvery == 0) {
+            lock.writeLock().lock();
+            try {
+                table[counter.operations & 15]++;
+                return 0;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        lock.readLock().lock();
+        try {
+            return table[0] + table[15];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
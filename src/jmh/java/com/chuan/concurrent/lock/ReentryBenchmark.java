@@ -0,0 +1,65 @@
+package com.chuan.concurrent.lock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Re-entry of {@link MyLock} by its owner against {@link ReentrantLock}, in unfair and fair mode. The nested
+ * acquisition must stay as cheap as the outer one.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReentryBenchmark {
+
+    @Param({"MyLock", "ReentrantLock", "MyLockFair", "ReentrantLockFair"})
+    public String impl;
+
+    /**
+     * Critical-section size, in {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({"0", "64"})
+    public int work;
+
+    private Lock lock;
+
+    @Setup
+    public void setUp() {
+        lock = LockBenchmark.newLock(impl);
+    }
+
+    @Benchmark
+    public void lockTwiceUnlockTwice() {
+        final Lock lock = this.lock;
+        lock.lock();
+        try {
+            lock.lock();
+            try {
+                Blackhole.consumeCPU(work);
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
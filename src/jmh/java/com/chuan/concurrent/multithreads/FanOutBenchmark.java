@@ -0,0 +1,91 @@
+package com.chuan.concurrent.multithreads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out/fan-in throughput: every invocation submits one task, which submits {@link #TASKS} leaf tasks from inside the
+ * pool and the caller waits for all leaves. Compares {@link WorkStealingExecutor} with a fixed
+ * {@link ThreadPoolExecutor}, whose workers all share one queue, and with {@link ForkJoinPool}.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FanOutBenchmark {
+
+    private static final int TASKS = 256;
+
+    @Param({"WorkStealingExecutor", "ThreadPoolExecutor", "ForkJoinPool"})
+    public String impl;
+
+    @Param({"2", "4"})
+    public int workers;
+
+    /**
+     * Tokens of CPU work per leaf task, see {@link Blackhole#consumeCPU(long)}.
+     */
+    @Param({"0", "256"})
+    public long work;
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        switch (impl) {
+            case "WorkStealingExecutor": executor = new WorkStealingExecutor(workers); break;
+            case "ThreadPoolExecutor":
+                executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>());
+                break;
+            case "ForkJoinPool": executor = new ForkJoinPool(workers); break;
+            default: throw new IllegalArgumentException(impl);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void fanOut() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(TASKS);
+        final long work = this.work;
+        final Runnable leaf = () -> {
+            Blackhole.consumeCPU(work);
+            done.countDown();
+        };
+        executor.execute(() -> {
+            for (int i = 0; i < TASKS; i++) {
+                executor.execute(leaf);
+            }
+        });
+        done.await();
+    }
+}
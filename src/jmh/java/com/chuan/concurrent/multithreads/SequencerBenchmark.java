@@ -0,0 +1,94 @@
+package com.chuan.concurrent.multithreads;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-over latency of {@link RoundRobinSequencer} per {@link WaitStrategy}. The benchmark thread is party 0 and the
+ * other parties run on background threads that pass their turn on at once, so one operation is a full cycle of
+ * "parties" hand-overs: divide the time per operation by the number of parties for the latency of one hand-over.
+ *
+ * The spinning strategies need a CPU per party. With more parties than CPUs they measure the scheduler instead.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class SequencerBenchmark {
+
+    private static final int SPINS = 100;
+
+    @Param({"busySpin", "yielding", "spinThenPark", "blocking"})
+    public String strategy;
+
+    @Param({"2", "4", "16", "64"})
+    public int parties;
+
+    private RoundRobinSequencer sequencer;
+    private Thread[] others;
+
+    @Setup
+    public void setUp() {
+        final WaitStrategy waitStrategy;
+        switch (strategy) {
+            case "busySpin": waitStrategy = WaitStrategy.busySpin(); break;
+            case "yielding": waitStrategy = WaitStrategy.yielding(SPINS); break;
+            case "spinThenPark": waitStrategy = WaitStrategy.spinThenPark(SPINS); break;
+            case "blocking": waitStrategy = WaitStrategy.blocking(); break;
+            default: throw new IllegalArgumentException(strategy);
+        }
+        sequencer = new RoundRobinSequencer(parties, waitStrategy);
+        final ThreadFactory factory = MyThreadFactory.builder().name("party-").daemon(true).build();
+        others = new Thread[parties - 1];
+        for (int i = 0; i < others.length; i++) {
+            final int party = i + 1;
+            others[i] = factory.newThread(() -> {
+                try {
+                    for (;;) {
+                        sequencer.awaitTurn(party);
+                        sequencer.advance(party);
+                    }
+                } catch (InterruptedException e) {
+                    // End of the trial.
+                }
+            });
+            others[i].start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        for (Thread t : others) {
+            t.interrupt();
+        }
+        for (Thread t : others) {
+            t.join();
+        }
+    }
+
+    @Benchmark
+    public long cycle() throws InterruptedException {
+        sequencer.awaitTurn(0);
+        sequencer.advance(0);
+        return sequencer.turn();
+    }
+}
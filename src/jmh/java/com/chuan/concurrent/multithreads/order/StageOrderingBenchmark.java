@@ -0,0 +1,110 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+import com.chuan.concurrent.multithreads.WaitStrategy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs of the {@link StageOrdering} implementations: one operation is a whole run of "stages" stages repeated
+ * "repetitions" times, so the sampled time is the latency of a run, and the "handOffs" counter reports the
+ * stage-to-stage hand-overs per microsecond.
+ *
+ * The full matrix takes long, the join orderings start a thread per stage and repetition; narrow it down with -p,
+ * e.g. -p repetitions=1,100.
+ *
+ * @author hechuan
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class StageOrderingBenchmark {
+
+    @Param({"Join", "MainThreadJoin", "WaitNotify", "SingleThreadExecutor", "Condition", "CountDownLatch",
+            "CyclicBarrier", "Semaphore", "Sequencer"})
+    public String ordering;
+
+    @Param({"3", "10", "100"})
+    public int stages;
+
+    @Param({"1", "100", "10000"})
+    public int repetitions;
+
+    /**
+     * Tokens of CPU work per stage, see {@link Blackhole#consumeCPU(long)}.
+     */
+    @Param({"0"})
+    public long work;
+
+    private StageOrdering stageOrdering;
+    private Runnable[] actions;
+
+    @Setup
+    public void setUp() {
+        final ThreadFactory factory = MyThreadFactory.builder().name("stage-").daemon(true).build();
+        switch (ordering) {
+            case "Join": stageOrdering = new JoinOrdering(stages, factory); break;
+            case "MainThreadJoin": stageOrdering = new MainThreadJoinOrdering(stages, factory); break;
+            case "WaitNotify": stageOrdering = new WaitNotifyOrdering(stages, factory); break;
+            case "SingleThreadExecutor": stageOrdering = new SingleThreadExecutorOrdering(stages, factory); break;
+            case "Condition": stageOrdering = new ConditionOrdering(stages, factory); break;
+            case "CountDownLatch": stageOrdering = new CountDownLatchOrdering(stages, factory); break;
+            case "CyclicBarrier": stageOrdering = new CyclicBarrierOrdering(stages, factory); break;
+            case "Semaphore": stageOrdering = new SemaphoreOrdering(stages, factory); break;
+            case "Sequencer":
+                stageOrdering = new SequencerOrdering(stages, factory,
+                        () -> WaitStrategy.spinThenPark(SequencerOrdering.DEFAULT_SPINS));
+                break;
+            default: throw new IllegalArgumentException(ordering);
+        }
+        final long work = this.work;
+        actions = new Runnable[stages];
+        for (int i = 0; i < stages; i++) {
+            actions[i] = () -> Blackhole.consumeCPU(work);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        stageOrdering.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class HandOffs {
+
+        public long handOffs;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            handOffs = 0;
+        }
+    }
+
+    @Benchmark
+    public void run(HandOffs counters) throws InterruptedException {
+        stageOrdering.run(actions, repetitions);
+        counters.handOffs += (long) stages * repetitions - 1;
+    }
+}
@@ -0,0 +1,230 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The fields shared by the ring queues. The JVM lays out superclass fields before subclass fields, so the padding
+ * classes below keep head and tail on cache lines of their own, away from the read-mostly fields and from each other.
+ */
+abstract class RingQueueFields {
+    final Object[] buffer;
+    /**
+     * Slot i is free for the producer of position p when sequences[i] == p, and holds the element of position p for
+     * the consumer when sequences[i] == p + 1.
+     */
+    final long[] sequences;
+    final int mask;
+    final int spins;
+    final long maxParkNanos;
+
+    RingQueueFields(int capacity, int spins, long maxParkNanos) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be in (0, 2^30]!");
+        }
+        if (spins < 0 || maxParkNanos <= 0) { throw new IllegalArgumentException(); }
+        // A one-slot ring can not tell "published for this lap" from "free for the next lap", so use at least 2.
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        buffer = new Object[size];
+        sequences = new long[size];
+        for (int i = 0; i < size; i++) {
+            sequences[i] = i;
+        }
+        mask = size - 1;
+        this.spins = spins;
+        this.maxParkNanos = maxParkNanos;
+    }
+}
+
+abstract class RingQueueHeadPad extends RingQueueFields {
+    long p00, p01, p02, p03, p04, p05, p06, p07, p08, p09, p0a, p0b, p0c, p0d, p0e, p0f;
+
+    RingQueueHeadPad(int capacity, int spins, long maxParkNanos) {
+        super(capacity, spins, maxParkNanos);
+    }
+}
+
+abstract class RingQueueHead extends RingQueueHeadPad {
+    /** Position of the next element to poll. */
+    volatile long head;
+
+    RingQueueHead(int capacity, int spins, long maxParkNanos) {
+        super(capacity, spins, maxParkNanos);
+    }
+}
+
+abstract class RingQueueTailPad extends RingQueueHead {
+    long p10, p11, p12, p13, p14, p15, p16, p17, p18, p19, p1a, p1b, p1c, p1d, p1e, p1f;
+
+    RingQueueTailPad(int capacity, int spins, long maxParkNanos) {
+        super(capacity, spins, maxParkNanos);
+    }
+}
+
+abstract class RingQueueTail extends RingQueueTailPad {
+    /** Position of the next element to offer. */
+    volatile long tail;
+
+    RingQueueTail(int capacity, int spins, long maxParkNanos) {
+        super(capacity, spins, maxParkNanos);
+    }
+}
+
+/**
+ * Base of the lock-free bounded ring queues. The ring is a power-of-two array indexed by position &amp; mask, and every
+ * slot carries a sequence number telling producers and consumers whether it is their turn to use it (Dmitry Vyukov's
+ * bounded queue). The subclasses only differ in whether head and tail are claimed with a CAS or owned by a single
+ * thread.
+ *
+ * The timed offer and poll never block on a lock: they retry with {@link Thread#onSpinWait()} for a configurable number
+ * of rounds, then park for exponentially growing periods up to a configurable maximum. Nobody unparks a waiting
+ * thread, so the maximum park time bounds how late a waiter notices new room or a new element.
+ *
+ * @author hechuan
+ */
+public abstract class AbstractRingQueue<E> extends RingQueueTail implements BoundedQueue<E> {
+
+    public static final int DEFAULT_SPINS = 128;
+    public static final long DEFAULT_MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MIN_PARK_NANOS = 1000L;
+
+    static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+    static final VarHandle HEAD;
+    static final VarHandle TAIL;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            HEAD = lookup.findVarHandle(RingQueueHead.class, "head", long.class);
+            TAIL = lookup.findVarHandle(RingQueueTail.class, "tail", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    long p20, p21, p22, p23, p24, p25, p26, p27, p28, p29, p2a, p2b, p2c, p2d, p2e, p2f;
+
+    /**
+     * @param capacity rounded up to the next power of two, and to at least 2
+     * @param spins rounds of busy spinning before a timed offer or poll starts to park
+     * @param maxParkNanos upper bound of a single park of a timed offer or poll
+     */
+    protected AbstractRingQueue(int capacity, int spins, long maxParkNanos) {
+        super(capacity, spins, maxParkNanos);
+    }
+
+    /**
+     * Claims the tail position with a CAS, so that any number of producers can offer at the same time. A queue with a
+     * single producer overrides it with a plain store.
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) { throw new NullPointerException(); }
+        long position = tail;
+        for (;;) {
+            long dif = sequence(position) - position;
+            if (dif == 0) {
+                long witness = (long) TAIL.compareAndExchange(this, position, position + 1);
+                if (witness == position) {
+                    publish(position, e);
+                    return true;
+                }
+                position = witness;
+            } else if (dif < 0) {
+                // The slot still holds the element of the previous lap: full.
+                return false;
+            } else {
+                // Another producer already claimed this position.
+                position = tail;
+            }
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (offer(e)) { return true; }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int round = 0; ; round++) {
+            if (!idle(round, deadline)) { return false; }
+            if (offer(e)) { return true; }
+        }
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = poll();
+        if (e != null) { return e; }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (int round = 0; ; round++) {
+            if (!idle(round, deadline)) { return null; }
+            if ((e = poll()) != null) { return e; }
+        }
+    }
+
+    /**
+     * Waits a little before the next retry: spins for the first rounds, then parks.
+     *
+     * @return false if the deadline has passed
+     */
+    private boolean idle(int round, long deadline) throws InterruptedException {
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0L) { return false; }
+        if (round < spins) {
+            Thread.onSpinWait();
+        } else {
+            long park = MIN_PARK_NANOS << Math.min(round - spins, 20);
+            LockSupport.parkNanos(this, Math.min(Math.min(park, maxParkNanos), remaining));
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of elements, which may already be stale when other threads are active
+     */
+    public int size() {
+        long head, tail;
+        do {
+            head = this.head;
+            tail = this.tail;
+        } while (head != this.head);
+        long size = tail - head;
+        return size < 0 ? 0 : (int) Math.min(size, capacity());
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Stores the element into the slot of the claimed position and hands the slot over to the consumer.
+     */
+    final void publish(long position, E e) {
+        final int index = (int) position & mask;
+        buffer[index] = e;
+        SEQUENCE.setRelease(sequences, index, position + 1);
+    }
+
+    /**
+     * Takes the element out of the slot of the claimed position and hands the slot back to the producer of the
+     * position one lap later.
+     */
+    @SuppressWarnings("unchecked")
+    final E consume(long position) {
+        final int index = (int) position & mask;
+        E e = (E) buffer[index];
+        buffer[index] = null;
+        SEQUENCE.setRelease(sequences, index, position + mask + 1);
+        return e;
+    }
+
+    final long sequence(long position) {
+        return (long) SEQUENCE.getAcquire(sequences, (int) position & mask);
+    }
+}
@@ -0,0 +1,42 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The non-blocking and timed offer/poll operations shared by the bounded queues of this package, so that one queue can
+ * be swapped for another.
+ *
+ * @author hechuan
+ */
+public interface BoundedQueue<E> {
+
+    /**
+     * Inserts the element if there is room right now.
+     *
+     * @return false if the queue is full
+     * @throws NullPointerException if the element is null
+     */
+    boolean offer(E e);
+
+    /**
+     * Inserts the element, waiting up to the timeout for room.
+     *
+     * @return false if the queue was still full when the timeout elapsed
+     * @throws NullPointerException if the element is null
+     */
+    boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Removes the head element if there is one right now.
+     *
+     * @return the head element, or null if the queue is empty
+     */
+    E poll();
+
+    /**
+     * Removes the head element, waiting up to the timeout for one to arrive.
+     *
+     * @return the head element, or null if the queue was still empty when the timeout elapsed
+     */
+    E poll(long timeout, TimeUnit unit) throws InterruptedException;
+}
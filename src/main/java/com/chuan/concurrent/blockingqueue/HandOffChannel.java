@@ -0,0 +1,289 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A synchronous channel without capacity, like {@link java.util.concurrent.SynchronousQueue}: a put waits until a take
+ * receives its element, and a take waits until a put hands it one. It is lock-free and allocates nothing per
+ * hand-off: a waiting thread publishes a waiter object that it reuses for all its waits, and the thread that matches it
+ * claims the waiter with one CAS, hands the element over through it and unparks the waiting thread. A waiting thread
+ * spins for a while and yields once before it parks, so that a fast ping-pong between two threads rarely pays for park
+ * and unpark.
+ *
+ * Putters and takers wait in separate slots, so a waiter is only ever claimed by the opposite side. With one pair of
+ * slots, the default, the channel suits two threads handing items back and forth; more threads of the same side take
+ * turns for the slot. With more pairs of slots the channel is an elimination arena: every thread waits in the pair its
+ * hash picks and matchers look through all pairs, so puts and takes of many threads cancel each other out in pairs
+ * without a common field to contend on.
+ *
+ * @author hechuan
+ */
+public class HandOffChannel<E> implements BoundedQueue<E> {
+
+    /**
+     * On a single CPU the other side can not run while we spin, so spinning is off by default there.
+     */
+    public static final int DEFAULT_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+    /** Slots are this many references apart, so that waiters of different slots do not share a cache line. */
+    private static final int STRIDE = 16;
+    private static final long MIN_PARK_NANOS = 1000L;
+    private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Waiter[].class);
+    /** A thread waits on one channel at a time, so one waiter per thread serves all channels. */
+    private static final ThreadLocal<Waiter> WAITER = ThreadLocal.withInitial(Waiter::new);
+
+    /** The putter slot of pair i at (2 * i + 1) * STRIDE, its taker slot one stride further; index 0 is padding. */
+    private final Waiter[] slots;
+    private final int mask;
+    private final int spins;
+
+    static final class Waiter {
+        final Thread thread = Thread.currentThread();
+        /** Spreads the threads over the pairs of slots. */
+        final int hash = mix(thread.getId());
+        /** The element of a putter, or the element handed to a taker. */
+        Object item;
+        volatile boolean matched;
+
+        private static int mix(long id) {
+            long h = id * 0x9e3779b97f4a7c15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    public HandOffChannel() {
+        this(1, DEFAULT_SPINS);
+    }
+
+    /**
+     * @param pairs number of putter/taker slot pairs, rounded up to a power of two; more than one for elimination
+     * between many threads
+     * @param spins rounds of busy spinning before a waiting thread parks
+     */
+    public HandOffChannel(int pairs, int spins) {
+        if (pairs <= 0 || pairs > 1 << 16) { throw new IllegalArgumentException("Pairs must be in (0, 65536]!"); }
+        if (spins < 0) { throw new IllegalArgumentException("Spins must not be negative!"); }
+        final int size = pairs == 1 ? 1 : Integer.highestOneBit(pairs - 1) << 1;
+        slots = new Waiter[(2 * size + 1) * STRIDE];
+        mask = size - 1;
+        this.spins = spins;
+    }
+
+    /**
+     * Hands the element to a waiting taker, waiting for one if needed.
+     */
+    public void put(E e) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        transfer(e, false, 0L);
+    }
+
+    /**
+     * Hands the element to a taker only if one is waiting.
+     *
+     * @return false if no taker was waiting
+     */
+    @Override
+    public boolean offer(E e) {
+        if (e == null) { throw new NullPointerException(); }
+        return match(e, WAITER.get().hash) != null;
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        return transfer(e, true, unit.toNanos(timeout)) != null;
+    }
+
+    /**
+     * Receives an element from a putter, waiting for one if needed.
+     */
+    @SuppressWarnings("unchecked")
+    public E take() throws InterruptedException {
+        return (E) transfer(null, false, 0L);
+    }
+
+    /**
+     * Receives an element only if a putter is waiting.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        return (E) match(null, WAITER.get().hash);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return (E) transfer(null, true, unit.toNanos(timeout));
+    }
+
+    /**
+     * @param item the element to put, or null to take
+     * @return the element put or taken, null if timed out
+     */
+    private Object transfer(Object item, boolean timed, long nanos) throws InterruptedException {
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        final long deadline = timed ? System.nanoTime() + nanos : 0L;
+        final Waiter w = WAITER.get();
+        for (int round = 0; ; round++) {
+            final Object matched = match(item, w.hash);
+            if (matched != null) { return matched; }
+            // A zero timeout only hands off to a thread that is already waiting, like offer() and poll().
+            if (timed && nanos <= 0L) { return null; }
+            final int slot = post(w, item);
+            if (slot >= 0) {
+                // Check again for the other side, which may have looked before we were posted and posted itself.
+                if (!waitingOpposite(item != null)) { return await(w, slot, item, timed, deadline); }
+                if (SLOT.compareAndSet(slots, slot, w, null)) { continue; }
+                return await(w, slot, item, timed, deadline);
+            }
+            // All our slots are taken by threads of the same side: back off and try again.
+            if (!backOff(round, timed, deadline)) { return null; }
+        }
+    }
+
+    /**
+     * Claims a waiter of the opposite side and hands the element over.
+     *
+     * @return the element put or taken, null if no waiter of the opposite side was found
+     */
+    private Object match(Object item, int hash) {
+        final boolean put = item != null;
+        for (int i = 0; i <= mask; i++) {
+            final int slot = slot(hash + i, !put);
+            final Waiter o = (Waiter) SLOT.getVolatile(slots, slot);
+            if (o != null && SLOT.compareAndSet(slots, slot, o, null)) {
+                final Object result;
+                if (put) {
+                    o.item = item;
+                    result = item;
+                } else {
+                    result = o.item;
+                    o.item = null;
+                }
+                o.matched = true;
+                LockSupport.unpark(o.thread);
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Publishes the waiter in the first free slot of its side, starting at the pair of its hash.
+     *
+     * @return the slot, -1 if all slots of the side are taken
+     */
+    private int post(Waiter w, Object item) {
+        final boolean put = item != null;
+        w.item = item;
+        w.matched = false;
+        for (int i = 0; i <= mask; i++) {
+            final int slot = slot(w.hash + i, put);
+            if (slots[slot] == null && SLOT.compareAndSet(slots, slot, null, w)) { return slot; }
+        }
+        w.item = null;
+        return -1;
+    }
+
+    private boolean waitingOpposite(boolean put) {
+        for (int i = 0; i <= mask; i++) {
+            if (SLOT.getVolatile(slots, slot(i, !put)) != null) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Waits until a thread of the other side claimed the posted waiter. On timeout or interrupt the waiter withdraws
+     * from its slot, unless it was claimed just now: then the hand-off completes and an interrupt is restored.
+     */
+    private Object await(Waiter w, int slot, Object item, boolean timed, long deadline) throws InterruptedException {
+        boolean interrupted = false;
+        for (int round = 0; !w.matched; round++) {
+            // Checked before spinning too, so that a short timeout is not stretched to the spin budget.
+            final long remaining = timed ? deadline - System.nanoTime() : 1L;
+            if (remaining <= 0L || (interrupted = Thread.interrupted())) {
+                if (SLOT.compareAndSet(slots, slot, w, null)) {
+                    w.item = null;
+                    if (interrupted) { throw new InterruptedException(); }
+                    return null;
+                }
+                // Claimed: the matcher is about to set matched.
+                while (!w.matched) {
+                    Thread.onSpinWait();
+                }
+                break;
+            }
+            if (round < spins) {
+                Thread.onSpinWait();
+            } else if (round == spins) {
+                // Give the other side a chance to run and match us before we pay for park and unpark, which is
+                // what helps on a single CPU.
+                Thread.yield();
+            } else if (timed) {
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        if (interrupted) { Thread.currentThread().interrupt(); }
+        if (item != null) { return item; }
+        final Object result = w.item;
+        w.item = null;
+        return result;
+    }
+
+    /**
+     * @return false if the deadline has passed
+     */
+    private boolean backOff(int round, boolean timed, long deadline) throws InterruptedException {
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        long park = MIN_PARK_NANOS << Math.min(round, 20);
+        if (timed) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) { return false; }
+            park = Math.min(park, remaining);
+        }
+        if (round < spins) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(this, Math.min(park, MAX_PARK_NANOS));
+        }
+        return true;
+    }
+
+    private int slot(int pair, boolean put) {
+        return ((pair & mask) * 2 + (put ? 1 : 2)) * STRIDE;
+    }
+
+    /**
+     * @return the number of putter/taker slot pairs
+     */
+    public int pairs() {
+        return mask + 1;
+    }
+
+    /**
+     * @return true if a putter is waiting right now
+     */
+    public boolean hasWaitingPutter() {
+        return waitingOpposite(false);
+    }
+
+    /**
+     * @return true if a taker is waiting right now
+     */
+    public boolean hasWaitingTaker() {
+        return waitingOpposite(true);
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[pairs = " + pairs() + ", waiting putter = " + hasWaitingPutter()
+                + ", waiting taker = " + hasWaitingTaker() + "]";
+    }
+}
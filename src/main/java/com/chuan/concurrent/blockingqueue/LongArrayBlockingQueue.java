@@ -0,0 +1,300 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking queue of long values over a {@code long[]} ring, the primitive counterpart of
+ * {@link MyArrayBlockingQueue}. Values are stored unboxed, so offering and polling allocate nothing.
+ *
+ * A primitive can not be null, so the polls that find no value return the missing value given to the constructor,
+ * {@link Long#MIN_VALUE} by default. That value can still be queued, callers that need to tell it apart should pick
+ * one outside their domain, e.g. -1 for ids.
+ *
+ * Waking follows {@link MyArrayBlockingQueue}: a single lock, one signal per inserted value or freed slot, and no
+ * signal at all while nobody is waiting.
+ *
+ * @author hechuan
+ */
+public class LongArrayBlockingQueue {
+
+    private final long[] data;
+    private final long missingValue;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    private int count;
+    private int putIndex;
+    private int takeIndex;
+    /** Number of producers parked on notFull. */
+    private int putWaiters;
+    /** Number of consumers parked on notEmpty. */
+    private int takeWaiters;
+
+    public LongArrayBlockingQueue(int size) {
+        this(size, false, Long.MIN_VALUE);
+    }
+
+    /**
+     * @param fair if true, blocked producers and consumers are served in FIFO order
+     * @param missingValue returned by the polls that find the queue empty
+     */
+    public LongArrayBlockingQueue(int size, boolean fair, long missingValue) {
+        if (size <= 0) { throw new IllegalArgumentException("Size must be large than 0!"); }
+        data = new long[size];
+        this.missingValue = missingValue;
+        lock = new ReentrantLock(fair);
+        notEmpty = lock.newCondition();
+        notFull = lock.newCondition();
+    }
+
+    /**
+     * Inserts the value if there is room right now.
+     *
+     * @return false if the queue is full
+     */
+    public boolean offer(long v) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (count == data.length) { return false; }
+            enqueue(v);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the value, waiting up to the timeout for room.
+     *
+     * @return false if the queue was still full when the timeout elapsed
+     */
+    public boolean offer(long v, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanoTimes = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == data.length) {
+                if (nanoTimes <= 0L) { return false; }
+                putWaiters++;
+                try {
+                    nanoTimes = notFull.awaitNanos(nanoTimes);
+                } finally {
+                    putWaiters--;
+                }
+            }
+            enqueue(v);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the value, waiting as long as necessary for room.
+     */
+    public void put(long v) throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == data.length) {
+                putWaiters++;
+                try {
+                    notFull.await();
+                } finally {
+                    putWaiters--;
+                }
+            }
+            enqueue(v);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(long v) {
+        final long[] item = this.data;
+        item[putIndex++] = v;
+        if (putIndex == item.length) { putIndex = 0; }
+        count++;
+        if (takeWaiters > 0) { notEmpty.signal(); }
+    }
+
+    /**
+     * Removes the head value if there is one right now.
+     *
+     * @return the head value, or the missing value if the queue is empty
+     */
+    public long poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return count == 0 ? missingValue : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the head value, waiting up to the timeout for one to arrive.
+     *
+     * @return the head value, or the missing value if the queue was still empty when the timeout elapsed
+     */
+    public long poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanoTimes = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (nanoTimes <= 0L) { return missingValue; }
+                takeWaiters++;
+                try {
+                    nanoTimes = notEmpty.awaitNanos(nanoTimes);
+                } finally {
+                    takeWaiters--;
+                }
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the head value, waiting as long as necessary for one to arrive.
+     */
+    public long take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                takeWaiters++;
+                try {
+                    notEmpty.await();
+                } finally {
+                    takeWaiters--;
+                }
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the head value without removing it, or the missing value if the queue is empty
+     */
+    public long peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return count == 0 ? missingValue : data[takeIndex];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long dequeue() {
+        final long[] item = this.data;
+        long v = item[takeIndex++];
+        if (takeIndex == item.length) { takeIndex = 0; }
+        count--;
+        if (putWaiters > 0) { notFull.signal(); }
+        return v;
+    }
+
+    /**
+     * Inserts as many values of src[from, to) as there is room for, in order, without waiting.
+     *
+     * @return the number of values inserted, which are src[from, from + n)
+     */
+    public int offerAll(long[] src, int from, int to) {
+        if (from < 0 || to > src.length || from > to) { throw new IndexOutOfBoundsException(); }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final long[] item = this.data;
+            final int n = Math.min(to - from, item.length - count);
+            if (n == 0) { return 0; }
+            // The free slots may wrap around the end of the ring: copy the part up to the end, then the rest.
+            final int first = Math.min(n, item.length - putIndex);
+            System.arraycopy(src, from, item, putIndex, first);
+            System.arraycopy(src, from + first, item, 0, n - first);
+            putIndex += n;
+            if (putIndex >= item.length) { putIndex -= item.length; }
+            count += n;
+            for (int i = Math.min(n, takeWaiters); i > 0; i--) {
+                notEmpty.signal();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to dst.length values into dst[0, n), without waiting.
+     *
+     * @return the number of values removed
+     */
+    public int pollBatch(long[] dst) {
+        return pollBatch(dst, 0, dst.length);
+    }
+
+    /**
+     * Removes up to to - from values into dst[from, from + n), without waiting.
+     *
+     * @return the number of values removed
+     */
+    public int pollBatch(long[] dst, int from, int to) {
+        if (from < 0 || to > dst.length || from > to) { throw new IndexOutOfBoundsException(); }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final long[] item = this.data;
+            final int n = Math.min(to - from, count);
+            if (n == 0) { return 0; }
+            final int first = Math.min(n, item.length - takeIndex);
+            System.arraycopy(item, takeIndex, dst, from, first);
+            System.arraycopy(item, 0, dst, from + first, n - first);
+            takeIndex += n;
+            if (takeIndex >= item.length) { takeIndex -= item.length; }
+            count -= n;
+            for (int i = Math.min(n, putWaiters); i > 0; i--) {
+                notFull.signal();
+            }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int remainingCapacity() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return data.length - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    public long getMissingValue() {
+        return missingValue;
+    }
+}
@@ -0,0 +1,130 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.util.Arrays;
+
+/**
+ * A bounded binary min-heap of values ordered by a primitive long key, the storage of
+ * {@link MyPriorityBlockingQueue} and {@link MyDelayQueue}. Keys, insertion sequence numbers and values live in three
+ * parallel arrays, so adding and removing allocate nothing and compare keys without a comparator. Values with equal
+ * keys come out in insertion order.
+ *
+ * Not thread-safe, the queues guard it with their lock.
+ *
+ * @author hechuan
+ */
+final class LongKeyHeap {
+
+    private final long[] keys;
+    private final long[] seqs;
+    private final Object[] values;
+    private int size;
+    private long nextSeq;
+
+    LongKeyHeap(int capacity) {
+        if (capacity <= 0) { throw new IllegalArgumentException("Size must be large than 0!"); }
+        keys = new long[capacity];
+        seqs = new long[capacity];
+        values = new Object[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return values.length;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean isFull() {
+        return size == values.length;
+    }
+
+    /**
+     * The heap must not be full.
+     */
+    void add(long key, Object value) {
+        final long seq = nextSeq++;
+        // Move the parents down along the path to the root until the hole is where the new entry belongs.
+        int i = size++;
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (!less(key, seq, keys[parent], seqs[parent])) { break; }
+            move(parent, i);
+            i = parent;
+        }
+        set(i, key, seq, value);
+    }
+
+    /**
+     * The heap must not be empty.
+     */
+    long firstKey() {
+        return keys[0];
+    }
+
+    /**
+     * @return the value with the smallest key, null if the heap is empty
+     */
+    Object first() {
+        return values[0];
+    }
+
+    /**
+     * Removes the value with the smallest key, the heap must not be empty.
+     */
+    Object removeFirst() {
+        final Object first = values[0];
+        final int last = --size;
+        final long key = keys[last];
+        final long seq = seqs[last];
+        final Object value = values[last];
+        values[last] = null;
+        if (last > 0) {
+            // Move the smaller children up from the root until the hole is where the last entry belongs.
+            int i = 0;
+            final int half = last >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                final int right = child + 1;
+                if (right < last && less(keys[right], seqs[right], keys[child], seqs[child])) { child = right; }
+                if (!less(keys[child], seqs[child], key, seq)) { break; }
+                move(child, i);
+                i = child;
+            }
+            set(i, key, seq, value);
+        }
+        return first;
+    }
+
+    /**
+     * @return the value at heap index i, in no particular order
+     */
+    Object get(int i) {
+        return values[i];
+    }
+
+    void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    private static boolean less(long key, long seq, long otherKey, long otherSeq) {
+        return key < otherKey || key == otherKey && seq < otherSeq;
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        seqs[to] = seqs[from];
+        values[to] = values[from];
+    }
+
+    private void set(int i, long key, long seq, Object value) {
+        keys[i] = key;
+        seqs[i] = seq;
+        values[i] = value;
+    }
+}
@@ -0,0 +1,481 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A bounded blocking queue of byte records stored off-heap in a memory-mapped file, with the offer/poll semantics of
+ * {@link MyArrayBlockingQueue}. The records survive a restart of the process: reopening the file recovers every record
+ * that was offered and not yet polled.
+ *
+ * The file starts with a 64 byte header holding a magic number, a version, the capacity of the data region, and the
+ * head and tail as absolute byte positions that only grow; a position modulo the capacity is an offset in the data
+ * region. Every record is a 4 byte length followed by the payload, padded to 8 bytes. A record never wraps around the
+ * end of the region: if it does not fit in the rest, a padding marker sends the reader back to the start.
+ *
+ * A producer writes the payload and the length first and then stores the new tail to the header, so a crash in the
+ * middle of an offer leaves the record invisible. A consumer stores the new head once it is done with a record. Writes
+ * reach the page cache immediately and outlive a crash of the process; {@link #force()} writes them to the device to
+ * also outlive a crash of the machine.
+ *
+ * {@link #offer(int, Consumer)} hands the producer a slice of the mapped file to write the payload into, so nothing is
+ * copied through a heap buffer; {@link #poll(Consumer)} does the same for the consumer. A single lock guards the
+ * queue, and a file lock keeps other processes from opening the same file.
+ *
+ * @author hechuan
+ */
+public class MappedRingQueue implements BoundedQueue<byte[]>, Closeable {
+
+    private static final int MAGIC = 0x43485251;
+    private static final int VERSION = 1;
+    private static final int VERSION_OFFSET = 4;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int HEAD_OFFSET = 16;
+    private static final int TAIL_OFFSET = 24;
+    static final int HEADER = 64;
+    private static final int LENGTH_PREFIX = 4;
+    private static final int ALIGNMENT = 8;
+    /** Length of the marker that fills the rest of the region when the next record does not fit. */
+    private static final int PADDING = -1;
+
+    private final FileChannel channel;
+    private final FileLock fileLock;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final int maxRecordLength;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    /** Guarded by lock. */
+    private long head;
+    private long tail;
+    private int count;
+    private int putWaiters;
+    private int takeWaiters;
+    private boolean closed;
+
+    private MappedRingQueue(FileChannel channel, FileLock fileLock, MappedByteBuffer buffer, int capacity)
+            throws IOException {
+        this.channel = channel;
+        this.fileLock = fileLock;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        // Any record fits into an empty queue, wherever the tail stands.
+        this.maxRecordLength = capacity / 2 - LENGTH_PREFIX;
+        this.head = buffer.getLong(HEAD_OFFSET);
+        this.tail = buffer.getLong(TAIL_OFFSET);
+        this.count = recover();
+    }
+
+    /**
+     * Opens the queue stored in the file, or creates an empty one if the file does not exist or is empty.
+     *
+     * @param capacity size of the data region in bytes, rounded up to a multiple of 8; must match the capacity of an
+     *                 existing file
+     * @throws IOException if the file can not be mapped, is locked by another process or is corrupted
+     */
+    public static MappedRingQueue open(Path file, int capacity) throws IOException {
+        if (capacity < 4 * ALIGNMENT || capacity > Integer.MAX_VALUE - HEADER - ALIGNMENT) {
+            throw new IllegalArgumentException("Capacity must be in [" + 4 * ALIGNMENT + ", "
+                    + (Integer.MAX_VALUE - HEADER - ALIGNMENT) + "]!");
+        }
+        final int cap = align(capacity);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            FileLock fileLock = tryLock(channel, file);
+            final boolean fresh = channel.size() == 0;
+            if (!fresh && channel.size() != HEADER + (long) cap) {
+                throw new IllegalArgumentException("File " + file + " holds a queue of another capacity!");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER + cap);
+            if (fresh) {
+                buffer.putInt(VERSION_OFFSET, VERSION);
+                buffer.putLong(CAPACITY_OFFSET, cap);
+                buffer.putLong(HEAD_OFFSET, 0L);
+                buffer.putLong(TAIL_OFFSET, 0L);
+                // The magic number goes last, so that a crash while formatting leaves no valid header behind.
+                VarHandle.releaseFence();
+                buffer.putInt(0, MAGIC);
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION
+                    || buffer.getLong(CAPACITY_OFFSET) != cap) {
+                throw new IOException("File " + file + " is not a queue file of this version and capacity!");
+            }
+            return new MappedRingQueue(channel, fileLock, buffer, cap);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static FileLock tryLock(FileChannel channel, Path file) throws IOException {
+        try {
+            FileLock fileLock = channel.tryLock();
+            if (fileLock != null) { return fileLock; }
+        } catch (OverlappingFileLockException e) {
+            // Already open in this process.
+        }
+        throw new IOException("File " + file + " is already in use!");
+    }
+
+    /**
+     * Walks the records between head and tail to check them and count them.
+     *
+     * @return the number of records
+     */
+    private int recover() throws IOException {
+        if (head < 0 || head > tail || tail - head > capacity || head % ALIGNMENT != 0 || tail % ALIGNMENT != 0) {
+            throw new IOException("Corrupted queue file: head " + head + ", tail " + tail);
+        }
+        int n = 0;
+        long pos = head;
+        while (pos < tail) {
+            final int offset = offset(pos);
+            final int length = buffer.getInt(HEADER + offset);
+            if (length == PADDING) {
+                pos += capacity - offset;
+            } else if (length < 0 || length > maxRecordLength || offset + recordSize(length) > capacity) {
+                throw new IOException("Corrupted queue file: record length " + length + " at " + pos);
+            } else {
+                pos += recordSize(length);
+                n++;
+            }
+        }
+        if (pos != tail) { throw new IOException("Corrupted queue file: records overrun tail " + tail); }
+        return n;
+    }
+
+    @Override
+    public boolean offer(byte[] e) {
+        if (e == null) { throw new NullPointerException(); }
+        return offer(e.length, slice -> slice.put(e));
+    }
+
+    @Override
+    public boolean offer(byte[] e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        return offer(e.length, slice -> slice.put(e), timeout, unit);
+    }
+
+    /**
+     * Appends the remaining bytes of src as one record if there is room right now, advancing its position.
+     *
+     * @return false if the queue is full
+     */
+    public boolean offer(ByteBuffer src) {
+        return offer(src.remaining(), slice -> slice.put(src));
+    }
+
+    /**
+     * Appends a record of the given length if there is room right now. The writer gets a slice of the mapped file
+     * with exactly length bytes remaining and fills it in place, while the queue is locked; bytes it leaves unwritten
+     * are undefined. If the writer throws, nothing is appended.
+     *
+     * @return false if the queue is full
+     * @throws IllegalArgumentException if the length exceeds {@link #maxRecordLength()}
+     */
+    public boolean offer(int length, Consumer<ByteBuffer> writer) {
+        checkLength(length);
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ensureOpen();
+            final long pos = reserve(recordSize(length));
+            if (pos < 0) { return false; }
+            append(pos, length, writer);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #offer(int, Consumer)}, waiting up to the timeout for room.
+     *
+     * @return false if there was still no room for the record when the timeout elapsed
+     */
+    public boolean offer(int length, Consumer<ByteBuffer> writer, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        checkLength(length);
+        final int size = recordSize(length);
+        long nanoTimes = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            ensureOpen();
+            long pos;
+            while ((pos = reserve(size)) < 0) {
+                if (nanoTimes <= 0L) { return false; }
+                putWaiters++;
+                try {
+                    nanoTimes = notFull.awaitNanos(nanoTimes);
+                } finally {
+                    putWaiters--;
+                }
+                ensureOpen();
+            }
+            append(pos, length, writer);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds room for a record of the given size at the tail, writing a padding marker if it has to start over at the
+     * beginning of the region. Must hold the lock.
+     *
+     * @return the position to write the record at, or -1 if there is not enough room
+     */
+    private long reserve(int size) {
+        final int offset = offset(tail);
+        final int rest = capacity - offset;
+        final int needed = size <= rest ? size : rest + size;
+        if (needed > capacity - (tail - head)) { return -1L; }
+        if (size <= rest) { return tail; }
+        // Beyond the committed tail, so harmless if the record is then not appended.
+        buffer.putInt(HEADER + offset, PADDING);
+        return tail + rest;
+    }
+
+    /**
+     * Writes the record at pos and publishes it by storing the new tail, must hold the lock.
+     */
+    private void append(long pos, int length, Consumer<ByteBuffer> writer) {
+        final int offset = HEADER + offset(pos);
+        writer.accept(buffer.slice(offset + LENGTH_PREFIX, length));
+        buffer.putInt(offset, length);
+        // The record has to be in memory before the tail that makes it visible.
+        VarHandle.releaseFence();
+        tail = pos + recordSize(length);
+        buffer.putLong(TAIL_OFFSET, tail);
+        count++;
+        if (takeWaiters > 0) { notEmpty.signal(); }
+    }
+
+    @Override
+    public byte[] poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ensureOpen();
+            return count == 0 ? null : remove(null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public byte[] poll(long timeout, TimeUnit unit) throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            return awaitRecord(unit.toNanos(timeout)) ? remove(null) : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the head record if there is one right now, handing it to the reader as a read-only slice of the mapped
+     * file. The slice is only valid during the call, which runs while the queue is locked. If the reader throws, the
+     * record stays in the queue, so a record is only consumed once the reader returned.
+     *
+     * @return false if the queue is empty
+     */
+    public boolean poll(Consumer<ByteBuffer> reader) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ensureOpen();
+            if (count == 0) { return false; }
+            remove(reader);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #poll(Consumer)}, waiting up to the timeout for a record to arrive.
+     *
+     * @return false if the queue was still empty when the timeout elapsed
+     */
+    public boolean poll(Consumer<ByteBuffer> reader, long timeout, TimeUnit unit) throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            if (!awaitRecord(unit.toNanos(timeout))) { return false; }
+            remove(reader);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits for a record, must hold the lock.
+     *
+     * @return false if the timeout elapsed first
+     */
+    private boolean awaitRecord(long nanoTimes) throws InterruptedException {
+        ensureOpen();
+        while (count == 0) {
+            if (nanoTimes <= 0L) { return false; }
+            takeWaiters++;
+            try {
+                nanoTimes = notEmpty.awaitNanos(nanoTimes);
+            } finally {
+                takeWaiters--;
+            }
+            ensureOpen();
+        }
+        return true;
+    }
+
+    /**
+     * Removes the head record, must hold the lock and the queue must not be empty.
+     *
+     * @param reader gets the record in place, or null to copy it into a new array
+     * @return the copied record, or null if it was given to the reader
+     */
+    private byte[] remove(Consumer<ByteBuffer> reader) {
+        int offset = offset(head);
+        int length = buffer.getInt(HEADER + offset);
+        long pos = head;
+        if (length == PADDING) {
+            pos += capacity - offset;
+            offset = 0;
+            length = buffer.getInt(HEADER);
+        }
+        byte[] e = null;
+        if (reader == null) {
+            e = new byte[length];
+            buffer.get(HEADER + offset + LENGTH_PREFIX, e);
+        } else {
+            reader.accept(buffer.slice(HEADER + offset + LENGTH_PREFIX, length).asReadOnlyBuffer());
+        }
+        head = pos + recordSize(length);
+        buffer.putLong(HEAD_OFFSET, head);
+        count--;
+        // Records differ in size, so the one freed may not be enough for the producer that a signal would pick.
+        if (putWaiters > 0) { notFull.signalAll(); }
+        return e;
+    }
+
+    /**
+     * @return the number of records
+     */
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the bytes taken by records, their length prefixes, alignment and padding
+     */
+    public long usedBytes() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return tail - head;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the size of the data region in bytes
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the largest record length accepted, half the capacity less the length prefix
+     */
+    public int maxRecordLength() {
+        return maxRecordLength;
+    }
+
+    /**
+     * Writes the records and the header to the storage device, see {@link MappedByteBuffer#force()}.
+     */
+    public void force() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            ensureOpen();
+            buffer.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the file to the device, releases the file lock and closes the file. Blocked producers and consumers fail
+     * with an {@link IllegalStateException}.
+     */
+    @Override
+    public void close() throws IOException {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (closed) { return; }
+            closed = true;
+            buffer.force();
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            fileLock.release();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) { throw new IllegalStateException("Queue is closed!"); }
+    }
+
+    private void checkLength(int length) {
+        if (length < 0 || length > maxRecordLength) {
+            throw new IllegalArgumentException("Record length must be in [0, " + maxRecordLength + "]!");
+        }
+    }
+
+    private int offset(long pos) {
+        return (int) (pos % capacity);
+    }
+
+    private static int recordSize(int length) {
+        return align(LENGTH_PREFIX + length);
+    }
+
+    private static int align(int n) {
+        return (n + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+}
@@ -0,0 +1,37 @@
+package com.chuan.concurrent.blockingqueue;
+
+/**
+ * A lock-free bounded ring queue for any number of producer and consumer threads. Producers claim positions with a
+ * CAS on the tail and consumers with a CAS on the head.
+ *
+ * @author hechuan
+ */
+public class MpmcRingQueue<E> extends AbstractRingQueue<E> {
+
+    public MpmcRingQueue(int capacity) {
+        this(capacity, DEFAULT_SPINS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    public MpmcRingQueue(int capacity, int spins, long maxParkNanos) {
+        super(capacity, spins, maxParkNanos);
+    }
+
+    @Override
+    public E poll() {
+        long position = head;
+        for (;;) {
+            long dif = sequence(position) - (position + 1);
+            if (dif == 0) {
+                long witness = (long) HEAD.compareAndExchange(this, position, position + 1);
+                if (witness == position) { return consume(position); }
+                position = witness;
+            } else if (dif < 0) {
+                // The slot has not been published for this lap yet: empty.
+                return null;
+            } else {
+                // Another consumer already claimed this position.
+                position = head;
+            }
+        }
+    }
+}
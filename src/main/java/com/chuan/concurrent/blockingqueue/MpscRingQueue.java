@@ -0,0 +1,29 @@
+package com.chuan.concurrent.blockingqueue;
+
+/**
+ * A lock-free bounded ring queue for any number of producer threads and a single consumer thread. Producers claim
+ * positions with a CAS on the tail, the consumer owns the head.
+ *
+ * Using it from more than one consumer at a time corrupts the queue.
+ *
+ * @author hechuan
+ */
+public class MpscRingQueue<E> extends AbstractRingQueue<E> {
+
+    public MpscRingQueue(int capacity) {
+        this(capacity, DEFAULT_SPINS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    public MpscRingQueue(int capacity, int spins, long maxParkNanos) {
+        super(capacity, spins, maxParkNanos);
+    }
+
+    @Override
+    public E poll() {
+        final long position = (long) HEAD.getOpaque(this);
+        if (sequence(position) != position + 1) { return null; }
+        E e = consume(position);
+        HEAD.setRelease(this, position + 1);
+        return e;
+    }
+}
@@ -1,38 +1,133 @@
 package com.chuan.concurrent.blockingqueue;
 
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * A bounded blocking queue over an array ring guarded by a single lock.
+ *
+ * Every inserted element can satisfy only one consumer and every removed element frees only one slot, so enqueue and
+ * dequeue wake a single waiter with {@link Condition#signal()} instead of waking all of them. The number of parked
+ * producers and consumers is tracked under the lock, and no signal is sent when nobody is waiting.
+ *
+ * The batch operations {@link #offerAll}, {@link #pollBatch} and {@link #drainTo} move many elements under a single
+ * lock acquisition, and wake at most as many waiters as elements or slots they made available.
+ *
+ * Depth, latency and throughput statistics are off by default and can be switched on at runtime with
+ * {@link #enableStats(String)}, see {@link QueueStats}.
+ *
+ * An elastic queue, see {@link #MyArrayBlockingQueue(int, int, long, TimeUnit, boolean)}, starts with a small ring
+ * and grows it in chunks up to a hard maximum when producers find it full, then halves it again after occupancy has
+ * stayed at a quarter or less for a while. A fixed queue is simply one whose initial and maximum capacities are
+ * equal: it only ever reaches the resizing code when it is full anyway.
+ *
+ * The queue implements the full {@link BlockingQueue} contract, so it can be the work queue of a
+ * {@link java.util.concurrent.ThreadPoolExecutor}. Like every BlockingQueue it rejects null elements with a
+ * {@link NullPointerException}. Its iterators copy the elements under the lock when they are created and then
+ * traverse the copy without locking: they never throw {@link java.util.ConcurrentModificationException}, see every
+ * element present at creation exactly once, and do not reflect later modifications.
+ *
  * @author hechuan
  */
-public class MyArrayBlockingQueue<E> {
+public class MyArrayBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>, BoundedQueue<E> {
 
-    private final Object[] data;
+    /** Default time occupancy has to stay low before an elastic queue shrinks. */
+    public static final long DEFAULT_SHRINK_DELAY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** Number of low occupancy checks between two reads of the clock. */
+    private static final int SHRINK_CHECK_INTERVAL = 16;
+
+    /** Replaced when an elastic queue resizes, guarded by lock. */
+    private Object[] data;
+    /** The ring never shrinks below this, it is also the growth chunk. */
+    private final int minCapacity;
+    private final int maxCapacity;
+    private final long shrinkDelayNanos;
     private final ReentrantLock lock;
     private final Condition notEmpty;
     private final Condition notFull;
     private int count;
     private int putIndex;
     private int takeIndex;
+    /** Number of producers parked on notFull. */
+    private int putWaiters;
+    /** Number of consumers parked on notEmpty. */
+    private int takeWaiters;
+    /** Null while statistics are disabled, guarded by lock. */
+    private QueueStats stats;
+    /** Whether occupancy was a quarter or less at the last dequeue, and since when, guarded by lock. */
+    private boolean low;
+    private long lowSince;
+    private int lowChecks;
+
+    public MyArrayBlockingQueue(int size) {
+        this(size, false);
+    }
 
+    /**
+     * @param fair if true, blocked producers and consumers are served in FIFO order
+     */
     public MyArrayBlockingQueue(int size, boolean fair) {
-        data = new Object[size];
+        this(size, size, DEFAULT_SHRINK_DELAY_NANOS, TimeUnit.NANOSECONDS, fair);
+    }
+
+    /**
+     * Creates an elastic queue that shrinks after {@link #DEFAULT_SHRINK_DELAY_NANOS} of low occupancy.
+     */
+    public MyArrayBlockingQueue(int initialCapacity, int maxCapacity, boolean fair) {
+        this(initialCapacity, maxCapacity, DEFAULT_SHRINK_DELAY_NANOS, TimeUnit.NANOSECONDS, fair);
+    }
+
+    /**
+     * Creates an elastic queue. The ring starts with initialCapacity slots and, when a producer finds it full, grows
+     * by the larger of initialCapacity and half its length, up to maxCapacity. The larger array is allocated with the
+     * lock released and only the copy holds up consumers. Once the dequeues have seen the queue at a quarter of its
+     * length or less for shrinkDelay, the ring is halved, but never below initialCapacity. A queue that sees no
+     * dequeues at all keeps its length, {@link #trimToSize()} shrinks it on demand.
+     *
+     * @param fair if true, blocked producers and consumers are served in FIFO order
+     */
+    public MyArrayBlockingQueue(int initialCapacity, int maxCapacity, long shrinkDelay, TimeUnit unit, boolean fair) {
+        if (initialCapacity <= 0) { throw new IllegalArgumentException("Size must be large than 0!"); }
+        if (maxCapacity < initialCapacity) {
+            throw new IllegalArgumentException("Max capacity must not be less than the initial capacity!");
+        }
+        data = new Object[initialCapacity];
+        minCapacity = initialCapacity;
+        this.maxCapacity = maxCapacity;
+        shrinkDelayNanos = unit.toNanos(shrinkDelay);
         lock = new ReentrantLock(fair);
         notEmpty = lock.newCondition();
         notFull = lock.newCondition();
     }
 
+    @Override
     public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
-        if (e == null) { throw new IllegalStateException(); }
+        if (e == null) { throw new NullPointerException(); }
         long nanoTimes = unit.toNanos(timeout);
         final ReentrantLock lock = this.lock;
         lock.lockInterruptibly();
         try {
             while (count == data.length) {
-                if (nanoTimes <= 0L) { return false; }
-                nanoTimes = notFull.awaitNanos(nanoTimes);
+                if (grow(1)) { continue; }
+                if (nanoTimes <= 0L) {
+                    if (stats != null) { stats.rejectedOffer(); }
+                    return false;
+                }
+                putWaiters++;
+                try {
+                    long before = nanoTimes;
+                    nanoTimes = notFull.awaitNanos(nanoTimes);
+                    if (stats != null) { stats.putBlocked(before - nanoTimes); }
+                } finally {
+                    putWaiters--;
+                }
             }
             enqueue(e);
             return true;
@@ -41,12 +136,45 @@ public class MyArrayBlockingQueue<E> {
         }
     }
 
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == data.length) {
+                if (grow(1)) { continue; }
+                putWaiters++;
+                try {
+                    final QueueStats stats = this.stats;
+                    if (stats == null) {
+                        notFull.await();
+                    } else {
+                        long start = System.nanoTime();
+                        notFull.await();
+                        stats.putBlocked(System.nanoTime() - start);
+                    }
+                } finally {
+                    putWaiters--;
+                }
+            }
+            enqueue(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
     public boolean offer(E e) {
-        if (e == null) { throw new IllegalStateException(); }
+        if (e == null) { throw new NullPointerException(); }
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            if (data.length == count) { return false; }
+            while (data.length == count) {
+                if (grow(1)) { continue; }
+                if (stats != null) { stats.rejectedOffer(); }
+                return false;
+            }
             enqueue(e);
             return true;
         } finally {
@@ -56,30 +184,50 @@ public class MyArrayBlockingQueue<E> {
 
     private void enqueue(E e) {
         final Object[] item = this.data;
+        final QueueStats stats = this.stats;
+        if (stats != null) { stats.enqueued(putIndex, 1, count + 1, System.nanoTime()); }
         item[putIndex++] = e;
         if (putIndex == item.length) { putIndex = 0; }
         count++;
-        notEmpty.signalAll();
+        if (takeWaiters > 0) { notEmpty.signal(); }
     }
 
+    @Override
     public E poll() {
         final ReentrantLock lock = this.lock;
         lock.lock();
         try {
-            return count == 0 ? null : dequeue();
+            if (count == 0) {
+                if (stats != null) { stats.emptyPoll(); }
+                if (data.length > minCapacity) { checkShrink(); }
+                return null;
+            }
+            return dequeue();
         } finally {
             lock.unlock();
         }
     }
 
+    @Override
     public E poll(long timeout, TimeUnit unit) throws InterruptedException {
         long nanoTimes = unit.toNanos(timeout);
         final ReentrantLock lock = this.lock;
         lock.lockInterruptibly();
         try {
             while (count == 0) {
-                if (nanoTimes <= 0L) { return null; }
-                nanoTimes = notEmpty.awaitNanos(nanoTimes);
+                if (nanoTimes <= 0L) {
+                    if (stats != null) { stats.emptyPoll(); }
+                    if (data.length > minCapacity) { checkShrink(); }
+                    return null;
+                }
+                takeWaiters++;
+                try {
+                    long before = nanoTimes;
+                    nanoTimes = notEmpty.awaitNanos(nanoTimes);
+                    if (stats != null) { stats.takeBlocked(before - nanoTimes); }
+                } finally {
+                    takeWaiters--;
+                }
             }
             return dequeue();
         } finally {
@@ -87,14 +235,551 @@ public class MyArrayBlockingQueue<E> {
         }
     }
 
+    @Override
+    public E take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                takeWaiters++;
+                try {
+                    final QueueStats stats = this.stats;
+                    if (stats == null) {
+                        notEmpty.await();
+                    } else {
+                        long start = System.nanoTime();
+                        notEmpty.await();
+                        stats.takeBlocked(System.nanoTime() - start);
+                    }
+                } finally {
+                    takeWaiters--;
+                }
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (E) data[takeIndex];
+        } finally {
+            lock.unlock();
+        }
+    }
+
     private E dequeue() {
         final Object[] item = this.data;
+        final QueueStats stats = this.stats;
+        if (stats != null) { stats.dequeued(takeIndex, 1, System.nanoTime()); }
         @SuppressWarnings("unchecked")
         E e = (E) item[takeIndex];
         item[takeIndex++] = null;
         if (takeIndex == item.length) { takeIndex = 0; }
-        notFull.signalAll();
         count--;
+        if (putWaiters > 0) { notFull.signal(); }
+        if (item.length > minCapacity) { checkShrink(); }
         return e;
     }
+
+    /**
+     * Inserts as many elements of src[from, to) as there is room for, in order, without waiting.
+     *
+     * @return the number of elements inserted, which are src[from, from + n)
+     */
+    public int offerAll(E[] src, int from, int to) {
+        if (from < 0 || to > src.length || from > to) { throw new IndexOutOfBoundsException(); }
+        for (int i = from; i < to; i++) {
+            if (src[i] == null) { throw new NullPointerException(); }
+        }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            while (to - from > data.length - count && grow(to - from)) {
+                // Grow an elastic queue as far as needed and allowed.
+            }
+            final Object[] item = this.data;
+            final int n = Math.min(to - from, item.length - count);
+            if (n == 0) {
+                if (stats != null && to > from) { stats.rejectedOffer(); }
+                return 0;
+            }
+            if (stats != null) { stats.enqueued(putIndex, n, count + n, System.nanoTime()); }
+            // The free slots may wrap around the end of the ring: copy the part up to the end, then the rest.
+            final int first = Math.min(n, item.length - putIndex);
+            System.arraycopy(src, from, item, putIndex, first);
+            System.arraycopy(src, from + first, item, 0, n - first);
+            putIndex += n;
+            if (putIndex >= item.length) { putIndex -= item.length; }
+            count += n;
+            signalNotEmpty(n);
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to dst.length elements into dst[0, n), without waiting.
+     *
+     * @return the number of elements removed
+     */
+    public int pollBatch(E[] dst) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final Object[] item = this.data;
+            final int n = Math.min(dst.length, count);
+            if (n == 0) {
+                if (stats != null) { stats.emptyPoll(); }
+                return 0;
+            }
+            if (stats != null) { stats.dequeued(takeIndex, n, System.nanoTime()); }
+            final int first = Math.min(n, item.length - takeIndex);
+            System.arraycopy(item, takeIndex, dst, 0, first);
+            System.arraycopy(item, 0, dst, first, n - first);
+            Arrays.fill(item, takeIndex, takeIndex + first, null);
+            Arrays.fill(item, 0, n - first, null);
+            takeIndex += n;
+            if (takeIndex >= item.length) { takeIndex -= item.length; }
+            count -= n;
+            signalNotFull(n);
+            if (item.length > minCapacity) { checkShrink(); }
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all available elements and adds them to the given collection, without waiting.
+     *
+     * @return the number of elements transferred
+     */
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes up to maxElements available elements and adds them to the given collection, without waiting. If adding
+     * an element fails, the elements added so far are still removed from this queue.
+     *
+     * @return the number of elements transferred
+     */
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) { throw new NullPointerException(); }
+        if (c == this) { throw new IllegalArgumentException(); }
+        if (maxElements <= 0) { return 0; }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final Object[] item = this.data;
+            final int n = Math.min(maxElements, count);
+            final int start = takeIndex;
+            int i = 0;
+            try {
+                while (i < n) {
+                    @SuppressWarnings("unchecked")
+                    E e = (E) item[takeIndex];
+                    c.add(e);
+                    item[takeIndex++] = null;
+                    if (takeIndex == item.length) { takeIndex = 0; }
+                    i++;
+                }
+                return n;
+            } finally {
+                if (i > 0) {
+                    count -= i;
+                    if (stats != null) { stats.dequeued(start, i, System.nanoTime()); }
+                    signalNotFull(i);
+                    if (item.length > minCapacity) { checkShrink(); }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return maxCapacity - count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the maximum number of elements, the hard bound of an elastic queue
+     */
+    public int capacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * @return the length of the ring right now, which only differs from {@link #capacity()} for an elastic queue
+     */
+    public int allocatedCapacity() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return data.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Shrinks the ring of an elastic queue to its size right now, but not below the initial capacity.
+     */
+    public void trimToSize() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final int length = Math.max(minCapacity, count);
+            if (length < data.length) { resize(new Object[length]); }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) { return false; }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return indexOf(o, false) >= 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the first element that equals o, shifting the elements behind it one slot towards the head.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (o == null) { return false; }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            int i = indexOf(o, false);
+            if (i < 0) { return false; }
+            removeAt(i);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Object[] toArray() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return copyElements(new Object[count]);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] a) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (a.length < count) { a = (T[]) Arrays.copyOf(a, count, a.getClass()); }
+            copyElements(a);
+            if (a.length > count) { a[count] = null; }
+            return a;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final int n = count;
+            if (n == 0) { return; }
+            final Object[] item = this.data;
+            final int first = Math.min(n, item.length - takeIndex);
+            Arrays.fill(item, takeIndex, takeIndex + first, null);
+            Arrays.fill(item, 0, n - first, null);
+            if (stats != null) { stats.discarded(takeIndex, n); }
+            takeIndex = putIndex;
+            count = 0;
+            signalNotFull(n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns an iterator over a copy of the elements taken when it is created, see the class comment.
+     * {@link Iterator#remove()} removes the last returned element from the queue if it is still there.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(toArray());
+    }
+
+    /**
+     * Copies the elements in FIFO order into the start of dst, must hold the lock.
+     */
+    private <T> T[] copyElements(T[] dst) {
+        final Object[] item = this.data;
+        final int first = Math.min(count, item.length - takeIndex);
+        System.arraycopy(item, takeIndex, dst, 0, first);
+        System.arraycopy(item, 0, dst, first, count - first);
+        return dst;
+    }
+
+    /**
+     * Finds the slot of the first element that equals o, or is o if identity is true, must hold the lock.
+     *
+     * @return the slot index, -1 if not found
+     */
+    private int indexOf(Object o, boolean identity) {
+        final Object[] item = this.data;
+        for (int n = 0, i = takeIndex; n < count; n++) {
+            if (identity ? item[i] == o : o.equals(item[i])) { return i; }
+            if (++i == item.length) { i = 0; }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the element at slot i, must hold the lock. Removing the head is a dequeue, an interior element is
+     * overwritten by shifting the elements behind it one slot back, which moves the put index back as well.
+     */
+    private void removeAt(int i) {
+        final Object[] item = this.data;
+        if (i == takeIndex) {
+            item[takeIndex] = null;
+            if (stats != null) { stats.discarded(takeIndex, 1); }
+            if (++takeIndex == item.length) { takeIndex = 0; }
+        } else {
+            if (stats != null) { stats.removedAt(i, putIndex); }
+            for (;;) {
+                int next = i + 1 == item.length ? 0 : i + 1;
+                if (next == putIndex) {
+                    item[i] = null;
+                    putIndex = i;
+                    break;
+                }
+                item[i] = item[next];
+                i = next;
+            }
+        }
+        count--;
+        if (putWaiters > 0) { notFull.signal(); }
+    }
+
+    /**
+     * Starts collecting statistics without registering them with JMX.
+     *
+     * @return the statistics, the existing ones if already enabled
+     */
+    public QueueStats enableStats() {
+        return enableStats(null);
+    }
+
+    /**
+     * Starts collecting statistics and, unless the name is null, registers them as
+     * "com.chuan.concurrent:type=Queue,name=&lt;name&gt;" with the platform MBean server.
+     *
+     * @return the statistics, the existing ones if already enabled
+     * @throws IllegalArgumentException if another bean is registered under the name
+     */
+    public QueueStats enableStats(String name) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (stats == null) {
+                QueueStats s = new QueueStats(name, this, lock, data.length, count);
+                if (name != null) { s.register(); }
+                stats = s;
+            }
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops collecting statistics and unregisters them from JMX.
+     */
+    public void disableStats() {
+        final QueueStats s;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            s = stats;
+            stats = null;
+        } finally {
+            lock.unlock();
+        }
+        if (s != null) { s.unregister(); }
+    }
+
+    /**
+     * @return the statistics, or null if disabled
+     */
+    public QueueStats getStats() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Grows the ring of an elastic queue by at least one chunk, must hold the lock. The new array is allocated with
+     * the lock released, so another thread may have changed the queue in the meantime.
+     *
+     * @param needed the number of free slots the caller is short of
+     * @return false if the ring is at its maximum length, true if the caller should check for room again
+     */
+    private boolean grow(int needed) {
+        final int length = data.length;
+        if (length >= maxCapacity) { return false; }
+        final long chunk = Math.max(Math.max(minCapacity, length >>> 1), (long) count + needed - length);
+        final int newLength = (int) Math.min(maxCapacity, length + chunk);
+        final ReentrantLock lock = this.lock;
+        final Object[] next;
+        lock.unlock();
+        try {
+            next = new Object[newLength];
+        } finally {
+            lock.lock();
+        }
+        if (data.length == length && length - count < needed) { resize(next); }
+        return true;
+    }
+
+    /**
+     * Halves the ring once occupancy has stayed at a quarter or less for the shrink delay, must hold the lock. Called
+     * on the dequeue side of an elastic queue that is above its initial capacity; the clock is read only every
+     * {@value #SHRINK_CHECK_INTERVAL} calls.
+     */
+    private void checkShrink() {
+        final int length = data.length;
+        if (count > length >>> 2) {
+            low = false;
+            return;
+        }
+        if (!low) {
+            low = true;
+            lowSince = System.nanoTime();
+            lowChecks = 0;
+            return;
+        }
+        if (++lowChecks % SHRINK_CHECK_INTERVAL != 0) { return; }
+        final long now = System.nanoTime();
+        if (now - lowSince < shrinkDelayNanos) { return; }
+        resize(new Object[Math.max(minCapacity, length >>> 1)]);
+        // Occupancy has to stay low for another delay before the next halving.
+        lowSince = now;
+    }
+
+    /**
+     * Moves the elements to the start of a new ring, which must be large enough; must hold the lock.
+     */
+    private void resize(Object[] next) {
+        copyElements(next);
+        if (stats != null) { stats.resized(takeIndex, count, next.length); }
+        data = next;
+        takeIndex = 0;
+        putIndex = count == next.length ? 0 : count;
+    }
+
+    /**
+     * Wakes as many parked consumers as elements were inserted, must hold the lock.
+     */
+    private void signalNotEmpty(int inserted) {
+        for (int i = Math.min(inserted, takeWaiters); i > 0; i--) {
+            notEmpty.signal();
+        }
+    }
+
+    /**
+     * Wakes as many parked producers as slots were freed, must hold the lock.
+     */
+    private void signalNotFull(int freed) {
+        for (int i = Math.min(freed, putWaiters); i > 0; i--) {
+            notFull.signal();
+        }
+    }
+
+    /**
+     * Iterates a copy of the elements without holding the lock.
+     */
+    private final class Itr implements Iterator<E> {
+        private final Object[] elements;
+        private int cursor;
+        private Object lastRet;
+
+        Itr(Object[] elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return cursor < elements.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public E next() {
+            if (cursor >= elements.length) { throw new NoSuchElementException(); }
+            Object e = elements[cursor++];
+            lastRet = e;
+            return (E) e;
+        }
+
+        /**
+         * Removes the last returned element by identity, a no-op if a consumer already took it.
+         */
+        @Override
+        public void remove() {
+            final Object e = lastRet;
+            if (e == null) { throw new IllegalStateException(); }
+            lastRet = null;
+            final ReentrantLock lock = MyArrayBlockingQueue.this.lock;
+            lock.lock();
+            try {
+                int i = indexOf(e, true);
+                if (i >= 0) { removeAt(i); }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
@@ -0,0 +1,344 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking delay queue: every element is offered with a deadline and can only be polled once the deadline
+ * has passed, earliest deadline first. Unlike {@link java.util.concurrent.DelayQueue} the elements need not implement
+ * {@link java.util.concurrent.Delayed}: deadlines are kept unboxed in a {@link LongKeyHeap}, as nanoseconds since the
+ * queue was created so that comparing them can not overflow.
+ *
+ * The lock and conditions follow {@link MyArrayBlockingQueue}. Consumers wait leader-follower style: only the leader
+ * sleeps until the earliest deadline, the other consumers wait without a timeout until the leader has taken its
+ * element and hands the role on, or until an element with an earlier deadline arrives. That way a burst of waiting
+ * consumers does not turn into a burst of timed wake-ups every time the head changes.
+ *
+ * @author hechuan
+ */
+public class MyDelayQueue<E> {
+
+    private final LongKeyHeap heap;
+    private final long origin = System.nanoTime();
+    private final ReentrantLock lock;
+    /** Signalled when a new head arrives or the leader role is free. */
+    private final Condition available;
+    private final Condition notFull;
+    /** Number of producers parked on notFull. */
+    private int putWaiters;
+    /** The consumer waiting for the head deadline, guarded by lock. */
+    private Thread leader;
+
+    public MyDelayQueue(int size) {
+        this(size, false);
+    }
+
+    /**
+     * @param fair if true, blocked producers and consumers are served in FIFO order
+     */
+    public MyDelayQueue(int size, boolean fair) {
+        heap = new LongKeyHeap(size);
+        lock = new ReentrantLock(fair);
+        available = lock.newCondition();
+        notFull = lock.newCondition();
+    }
+
+    /**
+     * Inserts the element to become available after the delay, if there is room right now.
+     *
+     * @return false if the queue is full
+     */
+    public boolean offerAfter(E e, long delay, TimeUnit unit) {
+        return offerKey(keyAfter(delay, unit), e);
+    }
+
+    /**
+     * Inserts the element to become available at the given {@link System#nanoTime()}, if there is room right now.
+     *
+     * @return false if the queue is full
+     */
+    public boolean offerAt(long deadlineNanos, E e) {
+        return offerKey(deadlineNanos - origin, e);
+    }
+
+    private boolean offerKey(long key, E e) {
+        if (e == null) { throw new NullPointerException(); }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (heap.isFull()) { return false; }
+            enqueue(key, e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the element to become available at the given {@link System#nanoTime()}, waiting up to the timeout for
+     * room.
+     *
+     * @return false if the queue was still full when the timeout elapsed
+     */
+    public boolean offerAt(long deadlineNanos, E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        long nanoTimes = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (heap.isFull()) {
+                if (nanoTimes <= 0L) { return false; }
+                putWaiters++;
+                try {
+                    nanoTimes = notFull.awaitNanos(nanoTimes);
+                } finally {
+                    putWaiters--;
+                }
+            }
+            enqueue(deadlineNanos - origin, e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the element to become available after the delay, waiting as long as necessary for room.
+     */
+    public void putAfter(E e, long delay, TimeUnit unit) throws InterruptedException {
+        putKey(keyAfter(delay, unit), e);
+    }
+
+    /**
+     * Inserts the element to become available at the given {@link System#nanoTime()}, waiting as long as necessary
+     * for room.
+     */
+    public void putAt(long deadlineNanos, E e) throws InterruptedException {
+        putKey(deadlineNanos - origin, e);
+    }
+
+    private void putKey(long key, E e) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (heap.isFull()) {
+                putWaiters++;
+                try {
+                    notFull.await();
+                } finally {
+                    putWaiters--;
+                }
+            }
+            enqueue(key, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A new head makes the leader's deadline stale: depose it and wake a consumer to wait for the new one.
+     */
+    private void enqueue(long key, E e) {
+        heap.add(key, e);
+        if (heap.first() == e) {
+            leader = null;
+            available.signal();
+        }
+    }
+
+    /**
+     * Removes the element with the earliest deadline if that deadline has passed.
+     *
+     * @return the element, or null if the queue is empty or its earliest deadline still lies ahead
+     */
+    public E poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return heap.isEmpty() || heap.firstKey() > elapsed() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element with the earliest deadline, waiting up to the timeout for it to pass.
+     *
+     * @return the element, or null if no deadline passed within the timeout
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanoTimes = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                if (heap.isEmpty()) {
+                    if (nanoTimes <= 0L) { return null; }
+                    nanoTimes = available.awaitNanos(nanoTimes);
+                    continue;
+                }
+                final long delay = heap.firstKey() - elapsed();
+                if (delay <= 0L) { return dequeue(); }
+                if (nanoTimes <= 0L) { return null; }
+                if (nanoTimes < delay || leader != null) {
+                    nanoTimes = available.awaitNanos(nanoTimes);
+                } else {
+                    final Thread current = Thread.currentThread();
+                    leader = current;
+                    try {
+                        nanoTimes -= delay - available.awaitNanos(delay);
+                    } finally {
+                        if (leader == current) { leader = null; }
+                    }
+                }
+            }
+        } finally {
+            handOver();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element with the earliest deadline, waiting as long as necessary for it to pass.
+     */
+    public E take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            for (;;) {
+                if (heap.isEmpty()) {
+                    available.await();
+                    continue;
+                }
+                final long delay = heap.firstKey() - elapsed();
+                if (delay <= 0L) { return dequeue(); }
+                if (leader != null) {
+                    available.await();
+                } else {
+                    final Thread current = Thread.currentThread();
+                    leader = current;
+                    try {
+                        available.awaitNanos(delay);
+                    } finally {
+                        if (leader == current) { leader = null; }
+                    }
+                }
+            }
+        } finally {
+            handOver();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wakes a follower to become the next leader when a consumer leaves without one in place, must hold the lock.
+     */
+    private void handOver() {
+        if (leader == null && !heap.isEmpty()) { available.signal(); }
+    }
+
+    @SuppressWarnings("unchecked")
+    private E dequeue() {
+        E e = (E) heap.removeFirst();
+        if (putWaiters > 0) { notFull.signal(); }
+        return e;
+    }
+
+    /**
+     * @return the element with the earliest deadline, passed or not, without removing it; null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (E) heap.first();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to maxElements elements whose deadlines have passed, earliest first, and adds them to the given
+     * collection, without waiting. If adding an element fails, the elements added so far are still removed.
+     *
+     * @return the number of elements transferred
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) { throw new NullPointerException(); }
+        if (maxElements <= 0) { return 0; }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final long now = elapsed();
+            int n = 0;
+            try {
+                while (n < maxElements && !heap.isEmpty() && heap.firstKey() <= now) {
+                    c.add((E) heap.first());
+                    heap.removeFirst();
+                    n++;
+                }
+                return n;
+            } finally {
+                for (int k = Math.min(n, putWaiters); k > 0; k--) {
+                    notFull.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of elements, expired or not
+     */
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int remainingCapacity() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return heap.capacity() - heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return heap.capacity();
+    }
+
+    /**
+     * @return now, as nanoseconds since the queue was created
+     */
+    private long elapsed() {
+        return System.nanoTime() - origin;
+    }
+
+    /**
+     * @return the heap key of the time after the delay, saturated instead of overflowing for huge delays
+     */
+    private long keyAfter(long delay, TimeUnit unit) {
+        final long now = elapsed();
+        final long nanos = unit.toNanos(delay);
+        if (nanos > 0 && now > Long.MAX_VALUE - nanos) { return Long.MAX_VALUE; }
+        if (nanos < 0 && now < Long.MIN_VALUE - nanos) { return Long.MIN_VALUE; }
+        return now + nanos;
+    }
+}
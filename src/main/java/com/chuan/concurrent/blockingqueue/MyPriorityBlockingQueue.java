@@ -0,0 +1,273 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking priority queue over an array heap guarded by a single lock, with the structure of
+ * {@link MyArrayBlockingQueue}: one signal per inserted element or freed slot, and none while nobody is waiting.
+ *
+ * Every element is offered with a long priority and the polls return the element with the smallest one, elements of
+ * equal priority in the order they were offered. The priorities are kept unboxed in a {@link LongKeyHeap}, so unlike
+ * {@link java.util.concurrent.PriorityBlockingQueue} no comparator is called and nothing is allocated per element,
+ * and the capacity is fixed.
+ *
+ * @author hechuan
+ */
+public class MyPriorityBlockingQueue<E> {
+
+    private final LongKeyHeap heap;
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+    private final Condition notFull;
+    /** Number of producers parked on notFull. */
+    private int putWaiters;
+    /** Number of consumers parked on notEmpty. */
+    private int takeWaiters;
+
+    public MyPriorityBlockingQueue(int size) {
+        this(size, false);
+    }
+
+    /**
+     * @param fair if true, blocked producers and consumers are served in FIFO order
+     */
+    public MyPriorityBlockingQueue(int size, boolean fair) {
+        heap = new LongKeyHeap(size);
+        lock = new ReentrantLock(fair);
+        notEmpty = lock.newCondition();
+        notFull = lock.newCondition();
+    }
+
+    /**
+     * Inserts the element if there is room right now.
+     *
+     * @return false if the queue is full
+     */
+    public boolean offer(long priority, E e) {
+        if (e == null) { throw new NullPointerException(); }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (heap.isFull()) { return false; }
+            enqueue(priority, e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the element, waiting up to the timeout for room.
+     *
+     * @return false if the queue was still full when the timeout elapsed
+     */
+    public boolean offer(long priority, E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        long nanoTimes = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (heap.isFull()) {
+                if (nanoTimes <= 0L) { return false; }
+                putWaiters++;
+                try {
+                    nanoTimes = notFull.awaitNanos(nanoTimes);
+                } finally {
+                    putWaiters--;
+                }
+            }
+            enqueue(priority, e);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts the element, waiting as long as necessary for room.
+     */
+    public void put(long priority, E e) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (heap.isFull()) {
+                putWaiters++;
+                try {
+                    notFull.await();
+                } finally {
+                    putWaiters--;
+                }
+            }
+            enqueue(priority, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(long priority, E e) {
+        heap.add(priority, e);
+        if (takeWaiters > 0) { notEmpty.signal(); }
+    }
+
+    /**
+     * Removes the element with the smallest priority if there is one right now.
+     *
+     * @return the element, or null if the queue is empty
+     */
+    public E poll() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return heap.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element with the smallest priority, waiting up to the timeout for one to arrive.
+     *
+     * @return the element, or null if the queue was still empty when the timeout elapsed
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanoTimes = unit.toNanos(timeout);
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (heap.isEmpty()) {
+                if (nanoTimes <= 0L) { return null; }
+                takeWaiters++;
+                try {
+                    nanoTimes = notEmpty.awaitNanos(nanoTimes);
+                } finally {
+                    takeWaiters--;
+                }
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the element with the smallest priority, waiting as long as necessary for one to arrive.
+     */
+    public E take() throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (heap.isEmpty()) {
+                takeWaiters++;
+                try {
+                    notEmpty.await();
+                } finally {
+                    takeWaiters--;
+                }
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private E dequeue() {
+        E e = (E) heap.removeFirst();
+        if (putWaiters > 0) { notFull.signal(); }
+        return e;
+    }
+
+    /**
+     * @return the element with the smallest priority without removing it, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return (E) heap.first();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the smallest priority in the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+    public long peekPriority() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (heap.isEmpty()) { throw new NoSuchElementException(); }
+            return heap.firstKey();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes up to maxElements elements in priority order and adds them to the given collection, without waiting.
+     * If adding an element fails, the elements added so far are still removed from this queue.
+     *
+     * @return the number of elements transferred
+     */
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) { throw new NullPointerException(); }
+        if (maxElements <= 0) { return 0; }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            final int n = Math.min(maxElements, heap.size());
+            int i = 0;
+            try {
+                while (i < n) {
+                    c.add((E) heap.first());
+                    heap.removeFirst();
+                    i++;
+                }
+                return n;
+            } finally {
+                for (int k = Math.min(i, putWaiters); k > 0; k--) {
+                    notFull.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int remainingCapacity() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            return heap.capacity() - heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return heap.capacity();
+    }
+}
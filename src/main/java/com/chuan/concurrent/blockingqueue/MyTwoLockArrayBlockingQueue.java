@@ -0,0 +1,180 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking queue over a pre-sized array ring, like {@link MyArrayBlockingQueue}, but with separate put and
+ * take locks in the style of {@link java.util.concurrent.LinkedBlockingQueue}. Producers only contend with producers
+ * and consumers only with consumers.
+ *
+ * The element count is an {@link AtomicInteger} shared by both sides. A producer writes its slot before incrementing
+ * the count and a consumer reads the count before reading its slot, so the count also publishes the slot contents.
+ *
+ * @author hechuan
+ */
+public class MyTwoLockArrayBlockingQueue<E> implements BoundedQueue<E> {
+
+    private final Object[] data;
+    private final AtomicInteger count = new AtomicInteger();
+
+    /** Guarded by putLock. */
+    private int putIndex;
+    private final ReentrantLock putLock;
+    private final Condition notFull;
+
+    /** Guarded by takeLock. */
+    private int takeIndex;
+    private final ReentrantLock takeLock;
+    private final Condition notEmpty;
+
+    public MyTwoLockArrayBlockingQueue(int size, boolean fair) {
+        if (size <= 0) { throw new IllegalArgumentException("Size must be large than 0!"); }
+        data = new Object[size];
+        putLock = new ReentrantLock(fair);
+        notFull = putLock.newCondition();
+        takeLock = new ReentrantLock(fair);
+        notEmpty = takeLock.newCondition();
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        long nanoTimes = unit.toNanos(timeout);
+        final int c;
+        final ReentrantLock putLock = this.putLock;
+        putLock.lockInterruptibly();
+        try {
+            while (count.get() == data.length) {
+                if (nanoTimes <= 0L) { return false; }
+                nanoTimes = notFull.awaitNanos(nanoTimes);
+            }
+            c = enqueue(e);
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0) { signalNotEmpty(); }
+        return true;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) { throw new NullPointerException(); }
+        // Racy pre-check to avoid taking the lock when obviously full.
+        if (count.get() == data.length) { return false; }
+        final int c;
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            if (count.get() == data.length) { return false; }
+            c = enqueue(e);
+        } finally {
+            putLock.unlock();
+        }
+        if (c == 0) { signalNotEmpty(); }
+        return true;
+    }
+
+    /**
+     * Inserts the element at the put index, must hold putLock.
+     *
+     * @return the count before the insertion
+     */
+    private int enqueue(E e) {
+        final Object[] item = this.data;
+        item[putIndex++] = e;
+        if (putIndex == item.length) { putIndex = 0; }
+        int c = count.getAndIncrement();
+        // Cascade the wake-up to another producer if there is still room, so that the consumer only has to signal
+        // once when the queue leaves the full state.
+        if (c + 1 < item.length) { notFull.signal(); }
+        return c;
+    }
+
+    @Override
+    public E poll() {
+        if (count.get() == 0) { return null; }
+        final E e;
+        final int c;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            if (count.get() == 0) { return null; }
+            e = dequeue();
+            c = count.getAndDecrement();
+            if (c > 1) { notEmpty.signal(); }
+        } finally {
+            takeLock.unlock();
+        }
+        if (c == data.length) { signalNotFull(); }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanoTimes = unit.toNanos(timeout);
+        final E e;
+        final int c;
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lockInterruptibly();
+        try {
+            while (count.get() == 0) {
+                if (nanoTimes <= 0L) { return null; }
+                nanoTimes = notEmpty.awaitNanos(nanoTimes);
+            }
+            e = dequeue();
+            c = count.getAndDecrement();
+            // Cascade the wake-up to another consumer, see enqueue().
+            if (c > 1) { notEmpty.signal(); }
+        } finally {
+            takeLock.unlock();
+        }
+        if (c == data.length) { signalNotFull(); }
+        return e;
+    }
+
+    /**
+     * Removes the element at the take index, must hold takeLock. The caller decrements the count afterwards, which
+     * hands the slot back to the producers.
+     */
+    private E dequeue() {
+        final Object[] item = this.data;
+        @SuppressWarnings("unchecked")
+        E e = (E) item[takeIndex];
+        item[takeIndex++] = null;
+        if (takeIndex == item.length) { takeIndex = 0; }
+        return e;
+    }
+
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Wakes a waiting consumer, called by a producer that made the queue non-empty.
+     */
+    private void signalNotEmpty() {
+        final ReentrantLock takeLock = this.takeLock;
+        takeLock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            takeLock.unlock();
+        }
+    }
+
+    /**
+     * Wakes a waiting producer, called by a consumer that made the queue non-full.
+     */
+    private void signalNotFull() {
+        final ReentrantLock putLock = this.putLock;
+        putLock.lock();
+        try {
+            notFull.signal();
+        } finally {
+            putLock.unlock();
+        }
+    }
+}
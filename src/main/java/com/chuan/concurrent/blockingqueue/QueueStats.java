@@ -0,0 +1,433 @@
+package com.chuan.concurrent.blockingqueue;
+
+import com.chuan.concurrent.metrics.LatencyHistogram;
+import com.chuan.concurrent.metrics.MBeans;
+
+import javax.management.ObjectName;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Depth, latency and throughput statistics of a {@link MyArrayBlockingQueue}, created by its
+ * {@code enableStats(String)}.
+ *
+ * Every update happens under the lock of the queue, so the counters are plain fields and recording an element costs a
+ * clock read and a histogram increment, without allocating. The time an element spends in the queue is measured with
+ * an array of enqueue timestamps parallel to the ring, allocated once when statistics are enabled; elements that were
+ * already queued at that point are not timed. The time producers and consumers spend blocked is taken from the
+ * remaining time returned by {@link java.util.concurrent.locks.Condition#awaitNanos(long)}, which needs no extra clock
+ * read.
+ *
+ * Reading the statistics takes the queue lock for a consistent copy, see {@link #snapshot()}.
+ *
+ * @author hechuan
+ */
+public final class QueueStats implements QueueStatsMXBean {
+
+    private static final long NONE = Long.MIN_VALUE;
+
+    private final String name;
+    private final MyArrayBlockingQueue<?> queue;
+    private final ReentrantLock lock;
+    private final LatencyHistogram timeInQueue = new LatencyHistogram();
+    private final LatencyHistogram putBlocked = new LatencyHistogram();
+    private final LatencyHistogram takeBlocked = new LatencyHistogram();
+    private ObjectName objectName;
+
+    /** Guarded by lock. */
+    private long[] enqueueTimes;
+    private long enqueued;
+    private long dequeued;
+    private long rejectedOffers;
+    private long emptyPolls;
+    private int highWaterMark;
+    private long startNanos;
+
+    /**
+     * Must hold the queue lock.
+     */
+    QueueStats(String name, MyArrayBlockingQueue<?> queue, ReentrantLock lock, int capacity, int size) {
+        this.name = name;
+        this.queue = queue;
+        this.lock = lock;
+        this.enqueueTimes = new long[capacity];
+        Arrays.fill(enqueueTimes, NONE);
+        this.highWaterMark = size;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Records n elements inserted at the ring slots [slot, slot + n) wrapping around, must hold the queue lock.
+     *
+     * @param size the number of elements after the insertion
+     */
+    void enqueued(int slot, int n, int size, long now) {
+        final long[] times = this.enqueueTimes;
+        for (int i = 0; i < n; i++) {
+            times[slot++] = now;
+            if (slot == times.length) { slot = 0; }
+        }
+        enqueued += n;
+        if (size > highWaterMark) { highWaterMark = size; }
+    }
+
+    /**
+     * Records n elements removed from the ring slots [slot, slot + n) wrapping around, must hold the queue lock.
+     */
+    void dequeued(int slot, int n, long now) {
+        final long[] times = this.enqueueTimes;
+        for (int i = 0; i < n; i++) {
+            long t = times[slot];
+            if (t != NONE) {
+                timeInQueue.record(now - t);
+                times[slot] = NONE;
+            }
+            if (++slot == times.length) { slot = 0; }
+        }
+        dequeued += n;
+    }
+
+    /**
+     * Forgets the timestamps of n elements removed from the slots [slot, slot + n) wrapping around without being
+     * consumed, must hold the queue lock.
+     */
+    void discarded(int slot, int n) {
+        final long[] times = this.enqueueTimes;
+        for (int i = 0; i < n; i++) {
+            times[slot] = NONE;
+            if (++slot == times.length) { slot = 0; }
+        }
+    }
+
+    /**
+     * Mirrors the removal of the interior element at slot, which shifts the timestamps of the slots up to putIndex
+     * one back, must hold the queue lock.
+     */
+    void removedAt(int slot, int putIndex) {
+        final long[] times = this.enqueueTimes;
+        for (;;) {
+            int next = slot + 1 == times.length ? 0 : slot + 1;
+            if (next == putIndex) {
+                times[slot] = NONE;
+                return;
+            }
+            times[slot] = times[next];
+            slot = next;
+        }
+    }
+
+    /**
+     * Mirrors the move of count elements from [takeIndex, ...) wrapping around to the start of a ring of the new
+     * length, must hold the queue lock.
+     */
+    void resized(int takeIndex, int count, int newLength) {
+        final long[] times = this.enqueueTimes;
+        final long[] next = new long[newLength];
+        Arrays.fill(next, count, newLength, NONE);
+        final int first = Math.min(count, times.length - takeIndex);
+        System.arraycopy(times, takeIndex, next, 0, first);
+        System.arraycopy(times, 0, next, first, count - first);
+        enqueueTimes = next;
+    }
+
+    void rejectedOffer() {
+        rejectedOffers++;
+    }
+
+    void emptyPoll() {
+        emptyPolls++;
+    }
+
+    void putBlocked(long nanos) {
+        putBlocked.record(nanos);
+    }
+
+    void takeBlocked(long nanos) {
+        takeBlocked.record(nanos);
+    }
+
+    /**
+     * @return a consistent copy of the counters, taken under the queue lock
+     */
+    public Snapshot snapshot() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            return new Snapshot(name, now, now - startNanos, queue.capacity(),
+                    queue.size(), highWaterMark, enqueued, dequeued, rejectedOffers, emptyPolls,
+                    timeInQueue.snapshot(), putBlocked.snapshot(), takeBlocked.snapshot());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registers this as "com.chuan.concurrent:type=Queue,name=..." with the platform MBean server.
+     *
+     * @throws IllegalArgumentException if the name is already registered
+     */
+    synchronized void register() {
+        if (objectName == null) { objectName = MBeans.register(this, "Queue", name); }
+    }
+
+    synchronized void unregister() {
+        if (objectName != null) {
+            MBeans.unregister(objectName);
+            objectName = null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getCapacity() {
+        return queue.capacity();
+    }
+
+    @Override
+    public int getSize() {
+        return queue.size();
+    }
+
+    @Override
+    public int getRemainingCapacity() {
+        return queue.remainingCapacity();
+    }
+
+    @Override
+    public double getOccupancy() {
+        return snapshot().getOccupancy();
+    }
+
+    @Override
+    public int getHighWaterMark() {
+        return snapshot().getHighWaterMark();
+    }
+
+    @Override
+    public long getEnqueued() {
+        return snapshot().getEnqueued();
+    }
+
+    @Override
+    public long getDequeued() {
+        return snapshot().getDequeued();
+    }
+
+    @Override
+    public long getRejectedOffers() {
+        return snapshot().getRejectedOffers();
+    }
+
+    @Override
+    public long getEmptyPolls() {
+        return snapshot().getEmptyPolls();
+    }
+
+    @Override
+    public double getEnqueueRatePerSecond() {
+        return snapshot().getEnqueueRatePerSecond();
+    }
+
+    @Override
+    public double getDequeueRatePerSecond() {
+        return snapshot().getDequeueRatePerSecond();
+    }
+
+    @Override
+    public long getTimeInQueueNanosP50() {
+        return timeInQueue.snapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getTimeInQueueNanosP99() {
+        return timeInQueue.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getTimeInQueueNanosMax() {
+        return timeInQueue.snapshot().getMax();
+    }
+
+    @Override
+    public long getPutBlockedNanosP99() {
+        return putBlocked.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getPutBlockedNanosMax() {
+        return putBlocked.snapshot().getMax();
+    }
+
+    @Override
+    public long getTakeBlockedNanosP99() {
+        return takeBlocked.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getTakeBlockedNanosMax() {
+        return takeBlocked.snapshot().getMax();
+    }
+
+    /**
+     * Clears counters and histograms, restarts the rate clock and lowers the high-water mark to the current size.
+     * Elements already queued keep their enqueue timestamps.
+     */
+    @Override
+    public void reset() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            enqueued = 0;
+            dequeued = 0;
+            rejectedOffers = 0;
+            emptyPolls = 0;
+            highWaterMark = queue.size();
+            startNanos = System.nanoTime();
+            timeInQueue.reset();
+            putBlocked.reset();
+            takeBlocked.reset();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * An immutable copy of the statistics.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long timestamp;
+        private final long elapsedNanos;
+        private final int capacity;
+        private final int size;
+        private final int highWaterMark;
+        private final long enqueued;
+        private final long dequeued;
+        private final long rejectedOffers;
+        private final long emptyPolls;
+        private final LatencyHistogram.Snapshot timeInQueue;
+        private final LatencyHistogram.Snapshot putBlocked;
+        private final LatencyHistogram.Snapshot takeBlocked;
+
+        Snapshot(String name, long timestamp, long elapsedNanos, int capacity, int size, int highWaterMark,
+                 long enqueued, long dequeued, long rejectedOffers, long emptyPolls,
+                 LatencyHistogram.Snapshot timeInQueue, LatencyHistogram.Snapshot putBlocked,
+                 LatencyHistogram.Snapshot takeBlocked) {
+            this.name = name;
+            this.timestamp = timestamp;
+            this.elapsedNanos = elapsedNanos;
+            this.capacity = capacity;
+            this.size = size;
+            this.highWaterMark = highWaterMark;
+            this.enqueued = enqueued;
+            this.dequeued = dequeued;
+            this.rejectedOffers = rejectedOffers;
+            this.emptyPolls = emptyPolls;
+            this.timeInQueue = timeInQueue;
+            this.putBlocked = putBlocked;
+            this.takeBlocked = takeBlocked;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return System.nanoTime() when the snapshot was taken
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public double getOccupancy() {
+            return (double) size / capacity;
+        }
+
+        public int getHighWaterMark() {
+            return highWaterMark;
+        }
+
+        public long getEnqueued() {
+            return enqueued;
+        }
+
+        public long getDequeued() {
+            return dequeued;
+        }
+
+        public long getRejectedOffers() {
+            return rejectedOffers;
+        }
+
+        public long getEmptyPolls() {
+            return emptyPolls;
+        }
+
+        /**
+         * @return the average rate since statistics were enabled or reset
+         */
+        public double getEnqueueRatePerSecond() {
+            return perSecond(enqueued, elapsedNanos);
+        }
+
+        public double getDequeueRatePerSecond() {
+            return perSecond(dequeued, elapsedNanos);
+        }
+
+        /**
+         * @return the rate between an earlier snapshot and this one
+         */
+        public double getEnqueueRatePerSecond(Snapshot earlier) {
+            return perSecond(enqueued - earlier.enqueued, timestamp - earlier.timestamp);
+        }
+
+        public double getDequeueRatePerSecond(Snapshot earlier) {
+            return perSecond(dequeued - earlier.dequeued, timestamp - earlier.timestamp);
+        }
+
+        public LatencyHistogram.Snapshot getTimeInQueueNanos() {
+            return timeInQueue;
+        }
+
+        public LatencyHistogram.Snapshot getPutBlockedNanos() {
+            return putBlocked;
+        }
+
+        public LatencyHistogram.Snapshot getTakeBlockedNanos() {
+            return takeBlocked;
+        }
+
+        private static double perSecond(long n, long nanos) {
+            return nanos <= 0 ? 0.0 : n * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": size=" + size + "/" + capacity + ", highWaterMark=" + highWaterMark
+                    + ", enqueued=" + enqueued + ", dequeued=" + dequeued + ", rejectedOffers=" + rejectedOffers
+                    + ", emptyPolls=" + emptyPolls + String.format(", enqueue/s=%.0f, dequeue/s=%.0f",
+                    getEnqueueRatePerSecond(), getDequeueRatePerSecond())
+                    + "\n  time in queue ns: " + timeInQueue + "\n  put blocked ns: " + putBlocked
+                    + "\n  take blocked ns: " + takeBlocked;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.chuan.concurrent.blockingqueue;
+
+/**
+ * The JMX view of {@link QueueStats}. Counters and rates cover the time since statistics were enabled or last reset,
+ * times are in nanoseconds and percentiles are accurate to 1/16 of the value.
+ *
+ * @author hechuan
+ */
+public interface QueueStatsMXBean {
+
+    String getName();
+
+    int getCapacity();
+
+    int getSize();
+
+    int getRemainingCapacity();
+
+    /**
+     * @return size / capacity, in [0, 1]
+     */
+    double getOccupancy();
+
+    int getHighWaterMark();
+
+    long getEnqueued();
+
+    long getDequeued();
+
+    /**
+     * @return offers that found the queue full, or timed out waiting for room
+     */
+    long getRejectedOffers();
+
+    /**
+     * @return polls that found the queue empty, or timed out waiting for an element
+     */
+    long getEmptyPolls();
+
+    double getEnqueueRatePerSecond();
+
+    double getDequeueRatePerSecond();
+
+    long getTimeInQueueNanosP50();
+
+    long getTimeInQueueNanosP99();
+
+    long getTimeInQueueNanosMax();
+
+    long getPutBlockedNanosP99();
+
+    long getPutBlockedNanosMax();
+
+    long getTakeBlockedNanosP99();
+
+    long getTakeBlockedNanosMax();
+
+    void reset();
+}
@@ -0,0 +1,415 @@
+package com.chuan.concurrent.blockingqueue;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded blocking queue split into shards, each a {@link MyArrayBlockingQueue} with its own lock, so that many
+ * producers fanning in to a few consumers do not all contend on one lock.
+ *
+ * A producer puts into the shard its thread hashes to. A consumer starts at the shard its thread hashes to and moves
+ * on round-robin, taking from the next shard that is not empty, so every consumer steals from every shard and no shard
+ * is left behind when there are more shards than consumers.
+ *
+ * The capacity is split evenly over the shards, which keeps the aggregate bound without a common counter. The
+ * {@link Ordering} decides what happens when the shard of a producer is full:
+ * <ul>
+ *     <li>{@link Ordering#RELAXED_FIFO}: the producer spills over to the next shard that has room, so the queue is only
+ *     full when all shards are, but elements of one producer may be taken out of order.</li>
+ *     <li>{@link Ordering#PER_PRODUCER_FIFO}: the producer waits for room in its own shard, so the elements of one
+ *     producer thread are taken in the order they were put, while producers mapped to other shards can go on.</li>
+ * </ul>
+ * There is no FIFO order between different producers in either mode.
+ *
+ * A consumer that finds all shards empty, or a relaxed producer that finds all full, waits on a condition of a separate
+ * lock that the other side only takes when someone waits, so the lock stays out of the way of the shards.
+ *
+ * @author hechuan
+ */
+public class ShardedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E>, BoundedQueue<E> {
+
+    public enum Ordering {
+        RELAXED_FIFO,
+        PER_PRODUCER_FIFO
+    }
+
+    private final MyArrayBlockingQueue<E>[] shards;
+    private final int capacity;
+    private final Ordering ordering;
+    /** The next shard a consumer looks at first. */
+    private final ThreadLocal<int[]> cursor = ThreadLocal.withInitial(() -> new int[] {home()});
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    /** Number of consumers waiting on notEmpty, written under lock. */
+    private volatile int takeWaiters;
+    /** Number of relaxed producers waiting on notFull, written under lock. */
+    private volatile int putWaiters;
+
+    /**
+     * Creates a relaxed FIFO queue with a shard per CPU, but no more shards than the capacity.
+     */
+    public ShardedBlockingQueue(int capacity) {
+        this(capacity, Math.min(capacity, Runtime.getRuntime().availableProcessors()), Ordering.RELAXED_FIFO);
+    }
+
+    /**
+     * @param capacity the bound of all shards together, split evenly over them
+     */
+    @SuppressWarnings("unchecked")
+    public ShardedBlockingQueue(int capacity, int shards, Ordering ordering) {
+        if (shards <= 0) { throw new IllegalArgumentException("Shards must be large than 0!"); }
+        if (capacity < shards) { throw new IllegalArgumentException("Capacity must not be less than the shards!"); }
+        if (ordering == null) { throw new NullPointerException(); }
+        this.shards = (MyArrayBlockingQueue<E>[]) new MyArrayBlockingQueue<?>[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new MyArrayBlockingQueue<>(capacity / shards + (i < capacity % shards ? 1 : 0));
+        }
+        this.capacity = capacity;
+        this.ordering = ordering;
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) { throw new NullPointerException(); }
+        if (!tryOffer(e)) { return false; }
+        signalNotEmpty();
+        return true;
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        long nanoTimes = unit.toNanos(timeout);
+        if (ordering == Ordering.PER_PRODUCER_FIFO) {
+            if (!shards[home()].offer(e, nanoTimes, TimeUnit.NANOSECONDS)) { return false; }
+        } else if (!tryOffer(e)) {
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                putWaiters++;
+                try {
+                    // Consumers read putWaiters after they took an element: we either see the room or get the signal.
+                    while (!tryOffer(e)) {
+                        if (nanoTimes <= 0L) { return false; }
+                        nanoTimes = notFull.awaitNanos(nanoTimes);
+                    }
+                } finally {
+                    putWaiters--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        signalNotEmpty();
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        if (e == null) { throw new NullPointerException(); }
+        if (ordering == Ordering.PER_PRODUCER_FIFO) {
+            shards[home()].put(e);
+        } else if (!tryOffer(e)) {
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                putWaiters++;
+                try {
+                    while (!tryOffer(e)) {
+                        notFull.await();
+                    }
+                } finally {
+                    putWaiters--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        signalNotEmpty();
+    }
+
+    /**
+     * Offers to the shard of the current thread, and in relaxed mode to the following shards if it is full.
+     */
+    private boolean tryOffer(E e) {
+        final MyArrayBlockingQueue<E>[] shards = this.shards;
+        final int home = home();
+        if (shards[home].offer(e)) { return true; }
+        if (ordering == Ordering.PER_PRODUCER_FIFO) { return false; }
+        for (int i = 1; i < shards.length; i++) {
+            if (shards[(home + i) % shards.length].offer(e)) { return true; }
+        }
+        return false;
+    }
+
+    @Override
+    public E poll() {
+        final E e = tryPoll();
+        if (e != null) { signalNotFull(1); }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = tryPoll();
+        if (e == null) {
+            long nanoTimes = unit.toNanos(timeout);
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                takeWaiters++;
+                try {
+                    // Producers read takeWaiters after they put an element, so we either see it or get the signal.
+                    while ((e = tryPoll()) == null) {
+                        if (nanoTimes <= 0L) { return null; }
+                        nanoTimes = notEmpty.awaitNanos(nanoTimes);
+                    }
+                } finally {
+                    takeWaiters--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        signalNotFull(1);
+        return e;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e = tryPoll();
+        if (e == null) {
+            final ReentrantLock lock = this.lock;
+            lock.lockInterruptibly();
+            try {
+                takeWaiters++;
+                try {
+                    while ((e = tryPoll()) == null) {
+                        notEmpty.await();
+                    }
+                } finally {
+                    takeWaiters--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        signalNotFull(1);
+        return e;
+    }
+
+    /**
+     * Polls the shards round-robin from the cursor of the current thread, which then points past the shard polled.
+     */
+    private E tryPoll() {
+        final MyArrayBlockingQueue<E>[] shards = this.shards;
+        final int[] cursor = this.cursor.get();
+        final int start = cursor[0];
+        for (int i = 0; i < shards.length; i++) {
+            final int shard = (start + i) % shards.length;
+            final E e = shards[shard].poll();
+            if (e != null) {
+                cursor[0] = shard + 1 == shards.length ? 0 : shard + 1;
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E peek() {
+        final MyArrayBlockingQueue<E>[] shards = this.shards;
+        final int start = cursor.get()[0];
+        for (int i = 0; i < shards.length; i++) {
+            final E e = shards[(start + i) % shards.length].peek();
+            if (e != null) { return e; }
+        }
+        return null;
+    }
+
+    /**
+     * Removes all available elements and adds them to the given collection, without waiting.
+     *
+     * @return the number of elements transferred
+     */
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Removes up to maxElements available elements, draining the shards one after the other from the cursor of the
+     * current thread, without waiting.
+     *
+     * @return the number of elements transferred
+     */
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) { throw new NullPointerException(); }
+        if (c == this) { throw new IllegalArgumentException(); }
+        final MyArrayBlockingQueue<E>[] shards = this.shards;
+        final int[] cursor = this.cursor.get();
+        int n = 0;
+        try {
+            for (int i = 0; i < shards.length && n < maxElements; i++) {
+                final int shard = (cursor[0] + i) % shards.length;
+                n += shards[shard].drainTo(c, maxElements - n);
+            }
+            return n;
+        } finally {
+            if (n > 0) { signalNotFull(n); }
+        }
+    }
+
+    private void signalNotEmpty() {
+        if (takeWaiters == 0) { return; }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signalNotFull(int n) {
+        if (putWaiters == 0) { return; }
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            if (n == 1) {
+                notFull.signal();
+            } else {
+                notFull.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the shard the current thread puts into, and starts polling from
+     */
+    private int home() {
+        long h = Thread.currentThread().getId() * 0x9e3779b97f4a7c15L;
+        return (int) ((h >>> 32) % shards.length);
+    }
+
+    /**
+     * @return the number of elements, which may already be stale when other threads are active
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (MyArrayBlockingQueue<E> shard : shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return in relaxed mode the room left in all shards together; per producer the room left in the shard of the
+     * current thread, as that is all its offer can use
+     */
+    @Override
+    public int remainingCapacity() {
+        if (ordering == Ordering.PER_PRODUCER_FIFO) { return shards[home()].remainingCapacity(); }
+        return capacity - size();
+    }
+
+    /**
+     * @return the bound of all shards together
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public int shards() {
+        return shards.length;
+    }
+
+    /**
+     * @return the number of elements in the given shard, to see how evenly the producers spread
+     */
+    public int shardSize(int shard) {
+        return shards[shard].size();
+    }
+
+    public Ordering ordering() {
+        return ordering;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        for (MyArrayBlockingQueue<E> shard : shards) {
+            if (shard.contains(o)) { return true; }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        for (MyArrayBlockingQueue<E> shard : shards) {
+            if (shard.remove(o)) {
+                signalNotFull(1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        for (MyArrayBlockingQueue<E> shard : shards) {
+            shard.clear();
+        }
+        signalNotFull(capacity);
+    }
+
+    /**
+     * Returns an iterator over the shards one after the other, each as described by
+     * {@link MyArrayBlockingQueue#iterator()}: a copy of the shard taken when the iterator reaches it.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr();
+    }
+
+    private final class Itr implements Iterator<E> {
+        private int shard;
+        private Iterator<E> current = shards[0].iterator();
+        private Iterator<E> lastRet;
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (++shard == shards.length) { return false; }
+                current = shards[shard].iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) { throw new NoSuchElementException(); }
+            lastRet = current;
+            return current.next();
+        }
+
+        @Override
+        public void remove() {
+            if (lastRet == null) { throw new IllegalStateException(); }
+            lastRet.remove();
+            lastRet = null;
+            signalNotFull(1);
+        }
+    }
+}
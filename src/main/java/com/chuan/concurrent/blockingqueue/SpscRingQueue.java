@@ -0,0 +1,39 @@
+package com.chuan.concurrent.blockingqueue;
+
+/**
+ * A lock-free bounded ring queue for a single producer thread and a single consumer thread. Each side owns its index
+ * and never needs a CAS: a slot changes hands only through its sequence number.
+ *
+ * Using it from more than one producer or more than one consumer at a time corrupts the queue.
+ *
+ * @author hechuan
+ */
+public class SpscRingQueue<E> extends AbstractRingQueue<E> {
+
+    public SpscRingQueue(int capacity) {
+        this(capacity, DEFAULT_SPINS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    public SpscRingQueue(int capacity, int spins, long maxParkNanos) {
+        super(capacity, spins, maxParkNanos);
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (e == null) { throw new NullPointerException(); }
+        final long position = (long) TAIL.getOpaque(this);
+        if (sequence(position) != position) { return false; }
+        publish(position, e);
+        TAIL.setRelease(this, position + 1);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        final long position = (long) HEAD.getOpaque(this);
+        if (sequence(position) != position + 1) { return null; }
+        E e = consume(position);
+        HEAD.setRelease(this, position + 1);
+        return e;
+    }
+}
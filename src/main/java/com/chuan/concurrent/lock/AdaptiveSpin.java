@@ -0,0 +1,68 @@
+package com.chuan.concurrent.lock;
+
+/**
+ * The spin budget of a lock: how many {@link Thread#onSpinWait()} rounds a thread that failed its first CAS retries
+ * before it enqueues and parks in AQS.
+ *
+ * The budget adapts to the hold times of the lock. A spin that ends with the lock acquired after n rounds has just
+ * measured how long the lock is held, so the budget grows to about twice that; a spin that gives up halves it. A lock
+ * held for long stretches therefore stops spinning, while a lock with sub-microsecond critical sections keeps spinning
+ * instead of paying for a park/unpark round-trip. The budget never drops below a small floor so that a lock whose hold
+ * times shrink again is noticed.
+ *
+ * The budget is read and updated without synchronization, a lost update only makes one estimate slightly off.
+ *
+ * @author hechuan
+ */
+final class AdaptiveSpin {
+
+    /**
+     * On a single CPU the owner can not run while we spin, so spinning is off by default there.
+     */
+    static final int DEFAULT_MAX_SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 10 : 0;
+    private static final int MIN_SPINS = 16;
+
+    /**
+     * Spinning threads check every this many rounds whether it is still worth spinning.
+     */
+    static final int CHECK_INTERVAL = 64;
+
+    private volatile int maxSpins;
+    private int limit;
+
+    AdaptiveSpin(int maxSpins) {
+        setMaxSpins(maxSpins);
+    }
+
+    void setMaxSpins(int maxSpins) {
+        if (maxSpins < 0) { throw new IllegalArgumentException("Max spins must not be negative!"); }
+        this.maxSpins = maxSpins;
+        limit = Math.min(limit, maxSpins);
+    }
+
+    int getMaxSpins() {
+        return maxSpins;
+    }
+
+    /**
+     * @return the number of rounds to spin now, 0 if spinning is disabled
+     */
+    int budget() {
+        final int max = maxSpins;
+        return max == 0 ? 0 : Math.min(Math.max(limit, MIN_SPINS), max);
+    }
+
+    /**
+     * The lock was acquired after spinning the given number of rounds.
+     */
+    void succeeded(int spins) {
+        limit = Math.min(maxSpins, Math.max(spins << 1, limit + (limit >> 2)));
+    }
+
+    /**
+     * The whole budget was spun, or spinning was abandoned, without acquiring the lock.
+     */
+    void failed() {
+        limit >>= 1;
+    }
+}
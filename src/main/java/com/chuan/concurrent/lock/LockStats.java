@@ -0,0 +1,334 @@
+package com.chuan.concurrent.lock;
+
+import com.chuan.concurrent.metrics.LatencyHistogram;
+import com.chuan.concurrent.metrics.MBeans;
+
+import javax.management.ObjectName;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention statistics of a {@link MyLock} or {@link MySharedLock}, created by their {@code enableStats(String)}.
+ *
+ * The locks hold a null reference while statistics are disabled, so the only cost then is one field read per
+ * acquisition and release. Once enabled:
+ * <ul>
+ *     <li>counters are {@link LongAdder}s, striped per thread, so instrumented threads do not bounce a shared line;</li>
+ *     <li>the time from a failed fast path until the lock is held goes into a wait histogram, the time from the
+ *     outermost acquisition until the matching release into a hold histogram, see {@link LatencyHistogram};</li>
+ *     <li>one in {@value #CALL_SITE_SAMPLE_RATE} contended acquisitions walks the stack for the caller of the lock,
+ *     which already pays for a spin or a park, and counts it per call site.</li>
+ * </ul>
+ *
+ * Hold times are kept per thread, so a permit released by a thread that did not acquire it is not timed.
+ *
+ * @author hechuan
+ */
+public final class LockStats implements LockStatsMXBean {
+
+    static final int CALL_SITE_SAMPLE_RATE = 8;
+    /** Beyond this many distinct call sites, new ones are counted as OTHER_CALL_SITES. */
+    static final int MAX_CALL_SITES = 256;
+    static final String OTHER_CALL_SITES = "<other>";
+    static final int DEFAULT_TOP_CALL_SITES = 10;
+
+    private static final StackWalker WALKER = StackWalker.getInstance();
+
+    private final String name;
+    private final String[] lockClasses;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder parked = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LatencyHistogram waitNanos = new LatencyHistogram();
+    private final LatencyHistogram holdNanos = new LatencyHistogram();
+    private final ConcurrentHashMap<String, LongAdder> callSites = new ConcurrentHashMap<>();
+    private final ThreadLocal<HoldClock> holds = ThreadLocal.withInitial(HoldClock::new);
+    private volatile ObjectName objectName;
+
+    LockStats(String name, Class<?> lockClass) {
+        this.name = name;
+        this.lockClasses = new String[] {LockStats.class.getName(), lockClass.getName()};
+    }
+
+    /**
+     * An acquisition that succeeded on the fast path.
+     *
+     * @param outermost false for a re-entry, which does not start a new hold
+     */
+    void acquired(boolean outermost) {
+        acquisitions.increment();
+        if (outermost) { holds.get().push(System.nanoTime()); }
+    }
+
+    /**
+     * An acquisition that failed the fast path and then succeeded. It always starts a hold, a re-entry never
+     * contends.
+     *
+     * @param waitStart System.nanoTime() when the fast path failed
+     * @param queued true if the thread had to enqueue after spinning
+     */
+    void contended(long waitStart, boolean queued) {
+        long now = System.nanoTime();
+        acquisitions.increment();
+        contended.increment();
+        if (queued) { parked.increment(); }
+        waitNanos.record(now - waitStart);
+        if (ThreadLocalRandom.current().nextInt(CALL_SITE_SAMPLE_RATE) == 0) { sampleCallSite(); }
+        holds.get().push(now);
+    }
+
+    /**
+     * A timed acquisition that gave up.
+     */
+    void timedOut(long waitStart) {
+        timedOut.increment();
+        waitNanos.record(System.nanoTime() - waitStart);
+    }
+
+    /**
+     * @param outermost false for releasing a re-entry, which does not end the hold
+     */
+    void released(boolean outermost) {
+        if (!outermost) { return; }
+        long start = holds.get().pop();
+        if (start != HoldClock.NONE) { holdNanos.record(System.nanoTime() - start); }
+    }
+
+    private void sampleCallSite() {
+        String site = WALKER.walk(frames -> frames
+                .filter(f -> !isLockFrame(f.getClassName()))
+                .findFirst()
+                .map(f -> f.toStackTraceElement().toString())
+                .orElse(OTHER_CALL_SITES));
+        LongAdder counter = callSites.get(site);
+        if (counter == null) {
+            if (callSites.size() >= MAX_CALL_SITES) { site = OTHER_CALL_SITES; }
+            counter = callSites.computeIfAbsent(site, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    private boolean isLockFrame(String className) {
+        for (String lockClass : lockClasses) {
+            if (className.equals(lockClass)
+                    || className.startsWith(lockClass) && className.charAt(lockClass.length()) == '$') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the counters and histograms as of now; they are read one after the other, not atomically
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(name, acquisitions.sum(), contended.sum(), parked.sum(), timedOut.sum(),
+                waitNanos.snapshot(), holdNanos.snapshot(), topCallSites(DEFAULT_TOP_CALL_SITES));
+    }
+
+    /**
+     * @return up to n call sites with their sampled contended acquisition counts, most contended first
+     */
+    public List<Map.Entry<String, Long>> topCallSites(int n) {
+        List<Map.Entry<String, Long>> sites = new ArrayList<>(callSites.size());
+        callSites.forEach((site, counter) -> sites.add(new AbstractMap.SimpleImmutableEntry<>(site, counter.sum())));
+        sites.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return Collections.unmodifiableList(sites.subList(0, Math.min(n, sites.size())));
+    }
+
+    /**
+     * Registers this as "com.chuan.concurrent:type=Lock,name=..." with the platform MBean server.
+     *
+     * @throws IllegalArgumentException if the name is already registered
+     */
+    synchronized void register() {
+        if (objectName == null) { objectName = MBeans.register(this, "Lock", name); }
+    }
+
+    synchronized void unregister() {
+        if (objectName != null) {
+            MBeans.unregister(objectName);
+            objectName = null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    @Override
+    public long getContendedAcquisitions() {
+        return contended.sum();
+    }
+
+    @Override
+    public long getParkedAcquisitions() {
+        return parked.sum();
+    }
+
+    @Override
+    public long getTimedOutAcquisitions() {
+        return timedOut.sum();
+    }
+
+    @Override
+    public long getWaitNanosP50() {
+        return waitNanos.snapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getWaitNanosP99() {
+        return waitNanos.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getWaitNanosMax() {
+        return waitNanos.snapshot().getMax();
+    }
+
+    @Override
+    public long getHoldNanosP50() {
+        return holdNanos.snapshot().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getHoldNanosP99() {
+        return holdNanos.snapshot().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getHoldNanosMax() {
+        return holdNanos.snapshot().getMax();
+    }
+
+    @Override
+    public String[] getTopContendedCallSites() {
+        return topCallSites(DEFAULT_TOP_CALL_SITES).stream().map(e -> e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Clears counters, histograms and call sites. Holds in progress are still timed.
+     */
+    @Override
+    public void reset() {
+        acquisitions.reset();
+        contended.reset();
+        parked.reset();
+        timedOut.reset();
+        waitNanos.reset();
+        holdNanos.reset();
+        callSites.clear();
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * The acquisition start times of the holds of one thread, innermost last. A shared lock may be held several times
+     * by the same thread, and releases match the latest acquisition.
+     */
+    private static final class HoldClock {
+        static final long NONE = Long.MIN_VALUE;
+
+        private long[] starts = new long[4];
+        private int depth;
+
+        void push(long start) {
+            if (depth == starts.length) { starts = Arrays.copyOf(starts, depth << 1); }
+            starts[depth++] = start;
+        }
+
+        long pop() {
+            return depth == 0 ? NONE : starts[--depth];
+        }
+    }
+
+    /**
+     * An immutable copy of the statistics.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long acquisitions;
+        private final long contended;
+        private final long parked;
+        private final long timedOut;
+        private final LatencyHistogram.Snapshot waitNanos;
+        private final LatencyHistogram.Snapshot holdNanos;
+        private final List<Map.Entry<String, Long>> topCallSites;
+
+        Snapshot(String name, long acquisitions, long contended, long parked, long timedOut,
+                 LatencyHistogram.Snapshot waitNanos, LatencyHistogram.Snapshot holdNanos,
+                 List<Map.Entry<String, Long>> topCallSites) {
+            this.name = name;
+            this.acquisitions = acquisitions;
+            this.contended = contended;
+            this.parked = parked;
+            this.timedOut = timedOut;
+            this.waitNanos = waitNanos;
+            this.holdNanos = holdNanos;
+            this.topCallSites = topCallSites;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getAcquisitions() {
+            return acquisitions;
+        }
+
+        /**
+         * @return acquisitions that failed the fast path, whether they then won by spinning or by queueing
+         */
+        public long getContendedAcquisitions() {
+            return contended;
+        }
+
+        /**
+         * @return contended acquisitions that had to enqueue in AQS after spinning
+         */
+        public long getParkedAcquisitions() {
+            return parked;
+        }
+
+        public long getTimedOutAcquisitions() {
+            return timedOut;
+        }
+
+        public LatencyHistogram.Snapshot getWaitNanos() {
+            return waitNanos;
+        }
+
+        public LatencyHistogram.Snapshot getHoldNanos() {
+            return holdNanos;
+        }
+
+        public List<Map.Entry<String, Long>> getTopCallSites() {
+            return topCallSites;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": acquisitions=" + acquisitions + ", contended=" + contended + ", parked=" + parked
+                    + ", timedOut=" + timedOut + "\n  wait ns: " + waitNanos + "\n  hold ns: " + holdNanos
+                    + "\n  top call sites: " + topCallSites;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.chuan.concurrent.lock;
+
+/**
+ * The JMX view of {@link LockStats}. Times are in nanoseconds, percentiles are accurate to 1/16 of the value.
+ *
+ * @author hechuan
+ */
+public interface LockStatsMXBean {
+
+    String getName();
+
+    long getAcquisitions();
+
+    long getContendedAcquisitions();
+
+    long getParkedAcquisitions();
+
+    long getTimedOutAcquisitions();
+
+    long getWaitNanosP50();
+
+    long getWaitNanosP99();
+
+    long getWaitNanosMax();
+
+    long getHoldNanosP50();
+
+    long getHoldNanosP99();
+
+    long getHoldNanosMax();
+
+    /**
+     * @return the most contended call sites as "site=count", most contended first
+     */
+    String[] getTopContendedCallSites();
+
+    void reset();
+}
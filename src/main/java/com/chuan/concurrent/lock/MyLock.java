@@ -6,40 +6,113 @@ import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 
 /**
- * An exclusive unfair lock implement by AQS.
+ * An exclusive reentrant lock implement by AQS, unfair by default and optionally fair.
+ *
+ * The state is the hold count of the owner thread. {@link #lock()} first tries a small fast path that the JIT can
+ * inline, an uncontended CAS from 0 or a re-entry by the owner, and only falls back to the queueing slow path of AQS
+ * when that fails.
+ *
+ * Between the two, a thread spins with {@link Thread#onSpinWait()} for an adaptive number of rounds, see
+ * {@link AdaptiveSpin}, and stops early when the owner is not running. Spinning can be tuned or disabled per instance
+ * with {@link #setMaxSpins(int)}.
+ *
+ * Contention statistics are off by default and can be switched on at runtime with {@link #enableStats(String)}, see
+ * {@link LockStats}.
  *
  * @author hechuan
  */
 public class MyLock implements Lock {
 
     private final Sync sync;
+    /** Null while statistics are disabled. */
+    private volatile LockStats stats;
 
     public MyLock() {
-        sync = new Sync();
+        this(false);
+    }
+
+    /**
+     * @param fair if true, a thread only acquires a free lock when no other thread has been queued longer
+     */
+    public MyLock(boolean fair) {
+        this(fair, AdaptiveSpin.DEFAULT_MAX_SPINS);
+    }
+
+    /**
+     * @param fair if true, a thread only acquires a free lock when no other thread has been queued longer
+     * @param maxSpins upper bound of the adaptive spin before parking, 0 disables spinning
+     */
+    public MyLock(boolean fair, int maxSpins) {
+        AdaptiveSpin spin = new AdaptiveSpin(maxSpins);
+        sync = fair ? new FairSync(spin) : new NonfairSync(spin);
     }
 
     @Override
     public void lock() {
-        sync.acquire(1);
+        if (sync.initialTryLock()) {
+            final LockStats stats = this.stats;
+            if (stats != null) { stats.acquired(sync.getHoldCount() == 1); }
+            return;
+        }
+        final LockStats stats = this.stats;
+        if (stats == null) {
+            if (!sync.spinAcquire()) { sync.acquire(1); }
+            return;
+        }
+        long start = System.nanoTime();
+        boolean queued = !sync.spinAcquire();
+        if (queued) { sync.acquire(1); }
+        stats.contended(start, queued);
     }
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        sync.acquireInterruptibly(1);
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        if (sync.initialTryLock()) {
+            final LockStats stats = this.stats;
+            if (stats != null) { stats.acquired(sync.getHoldCount() == 1); }
+            return;
+        }
+        final LockStats stats = this.stats;
+        long start = stats == null ? 0L : System.nanoTime();
+        boolean queued = !sync.spinAcquire();
+        if (queued) { sync.acquireInterruptibly(1); }
+        if (stats != null) { stats.contended(start, queued); }
     }
 
+    /**
+     * Acquires the lock if it is free or held by the current thread, barging even in fair mode.
+     */
     @Override
     public boolean tryLock() {
-        return sync.tryAcquire(1);
+        if (!sync.nonfairTryAcquire(1)) { return false; }
+        final LockStats stats = this.stats;
+        if (stats != null) { stats.acquired(sync.getHoldCount() == 1); }
+        return true;
     }
 
     @Override
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-        return sync.tryAcquireNanos(1, unit.toNanos(time));
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        final LockStats stats = this.stats;
+        if (sync.initialTryLock()) {
+            if (stats != null) { stats.acquired(sync.getHoldCount() == 1); }
+            return true;
+        }
+        if (stats == null) { return sync.tryAcquireNanos(1, unit.toNanos(time)); }
+        long start = System.nanoTime();
+        if (sync.tryAcquireNanos(1, unit.toNanos(time))) {
+            stats.contended(start, true);
+            return true;
+        }
+        stats.timedOut(start);
+        return false;
     }
 
     @Override
     public void unlock() {
+        final LockStats stats = this.stats;
+        if (stats != null) { stats.released(sync.getHoldCount() == 1); }
         sync.release(1);
     }
 
@@ -49,36 +122,234 @@ public class MyLock implements Lock {
     }
 
     public boolean isLocked() {
+        return sync.isLocked();
+    }
+
+    public boolean isHeldByCurrentThread() {
         return sync.isHeldExclusively();
     }
 
+    /**
+     * @return the number of holds on this lock by the current thread, 0 if it does not hold it
+     */
+    public int getHoldCount() {
+        return sync.getHoldCount();
+    }
+
+    public boolean isFair() {
+        return sync instanceof FairSync;
+    }
+
     public boolean hasQueuedThreads() {
         return sync.hasQueuedThreads();
     }
 
-    private static final class Sync extends AbstractQueuedSynchronizer {
+    /**
+     * @param maxSpins upper bound of the adaptive spin before parking, 0 disables spinning
+     */
+    public void setMaxSpins(int maxSpins) {
+        sync.spin.setMaxSpins(maxSpins);
+    }
+
+    public int getMaxSpins() {
+        return sync.spin.getMaxSpins();
+    }
+
+    /**
+     * Starts collecting contention statistics without registering them with JMX.
+     *
+     * @return the statistics, the existing ones if already enabled
+     */
+    public synchronized LockStats enableStats() {
+        if (stats == null) { stats = new LockStats(null, MyLock.class); }
+        return stats;
+    }
+
+    /**
+     * Starts collecting contention statistics and registers them as
+     * "com.chuan.concurrent:type=Lock,name=&lt;name&gt;" with the platform MBean server.
+     *
+     * @return the statistics, the existing ones if already enabled
+     * @throws IllegalArgumentException if another bean is registered under the name
+     */
+    public synchronized LockStats enableStats(String name) {
+        if (stats == null) {
+            LockStats s = new LockStats(name, MyLock.class);
+            s.register();
+            stats = s;
+        }
+        return stats;
+    }
+
+    /**
+     * Stops collecting statistics and unregisters them from JMX. Threads that are about to record may still do so.
+     */
+    public synchronized void disableStats() {
+        if (stats != null) {
+            stats.unregister();
+            stats = null;
+        }
+    }
+
+    /**
+     * @return the statistics, or null if disabled
+     */
+    public LockStats getStats() {
+        return stats;
+    }
+
+    private abstract static class Sync extends AbstractQueuedSynchronizer {
+        final AdaptiveSpin spin;
+
+        Sync(AdaptiveSpin spin) {
+            this.spin = spin;
+        }
+
         protected Condition newCondition() { return new ConditionObject(); }
 
+        /**
+         * The fast path of lock(): kept small so that it is inlined into the caller.
+         */
+        abstract boolean initialTryLock();
+
+        /**
+         * Spins for the adaptive budget, retrying whenever the lock looks free.
+         *
+         * @return true if the lock was acquired, false if the caller has to enqueue
+         */
+        final boolean spinAcquire() {
+            final AdaptiveSpin spin = this.spin;
+            final int budget = spin.budget();
+            if (budget == 0) { return false; }
+            for (int spins = 1; spins <= budget; spins++) {
+                Thread.onSpinWait();
+                if (getState() == 0 && tryAcquire(1)) {
+                    spin.succeeded(spins);
+                    return true;
+                }
+                if (spins % AdaptiveSpin.CHECK_INTERVAL == 0 && !worthSpinning()) { break; }
+            }
+            spin.failed();
+            return false;
+        }
+
+        /**
+         * An owner that is blocked or waiting will not release the lock any time soon.
+         */
+        boolean worthSpinning() {
+            final Thread owner = getExclusiveOwnerThread();
+            return owner == null || owner.getState() == Thread.State.RUNNABLE;
+        }
+
+        final boolean nonfairTryAcquire(int acquires) {
+            final Thread current = Thread.currentThread();
+            int c = getState();
+            if (c == 0) {
+                if (compareAndSetState(0, acquires)) {
+                    setExclusiveOwnerThread(current);
+                    return true;
+                }
+            } else if (getExclusiveOwnerThread() == current) {
+                return reenter(c, acquires);
+            }
+            return false;
+        }
+
+        /**
+         * Adds holds for the owner thread, only the owner writes the state so no CAS is needed.
+         */
+        final boolean reenter(int c, int acquires) {
+            int next = c + acquires;
+            if (next < 0) { throw new Error("Maximum lock count exceeded"); }
+            setState(next);
+            return true;
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getExclusiveOwnerThread() == Thread.currentThread();
+        }
+
+        @Override
+        protected boolean tryRelease(int arg) {
+            if (getExclusiveOwnerThread() != Thread.currentThread()) { throw new IllegalMonitorStateException(); }
+            int c = getState() - arg;
+            boolean free = c == 0;
+            if (free) { setExclusiveOwnerThread(null); }
+            setState(c);
+            return free;
+        }
+
+        final boolean isLocked() {
+            return getState() != 0;
+        }
+
+        final int getHoldCount() {
+            return isHeldExclusively() ? getState() : 0;
+        }
+    }
+
+    private static final class NonfairSync extends Sync {
+        NonfairSync(AdaptiveSpin spin) {
+            super(spin);
+        }
+
+        @Override
+        boolean initialTryLock() {
+            final Thread current = Thread.currentThread();
+            if (compareAndSetState(0, 1)) {
+                setExclusiveOwnerThread(current);
+                return true;
+            }
+            if (getExclusiveOwnerThread() == current) { return reenter(getState(), 1); }
+            return false;
+        }
+
         @Override
         protected boolean tryAcquire(int arg) {
-            if (compareAndSetState(0, arg)) {
+            if (getState() == 0 && compareAndSetState(0, arg)) {
                 setExclusiveOwnerThread(Thread.currentThread());
                 return true;
             }
             return false;
         }
+    }
+
+    private static final class FairSync extends Sync {
+        FairSync(AdaptiveSpin spin) {
+            super(spin);
+        }
 
+        /**
+         * Once threads are queued a fair lock goes to them, spinning can not win it.
+         */
         @Override
-        protected boolean isHeldExclusively() {
-            return getState() == 1;
+        boolean worthSpinning() {
+            return !hasQueuedThreads() && super.worthSpinning();
         }
 
         @Override
-        protected boolean tryRelease(int arg) {
-            if (getState() == 0) { throw new IllegalStateException(); }
-            setState(0);
-            setExclusiveOwnerThread(null);
-            return true;
+        boolean initialTryLock() {
+            final Thread current = Thread.currentThread();
+            int c = getState();
+            if (c == 0) {
+                if (!hasQueuedThreads() && compareAndSetState(0, 1)) {
+                    setExclusiveOwnerThread(current);
+                    return true;
+                }
+            } else if (getExclusiveOwnerThread() == current) {
+                return reenter(c, 1);
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean tryAcquire(int arg) {
+            if (getState() == 0 && !hasQueuedPredecessors() && compareAndSetState(0, arg)) {
+                setExclusiveOwnerThread(Thread.currentThread());
+                return true;
+            }
+            return false;
         }
     }
 
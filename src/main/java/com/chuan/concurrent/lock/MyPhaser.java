@@ -0,0 +1,407 @@
+package com.chuan.concurrent.lock;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.AbstractQueuedLongSynchronizer;
+
+/**
+ * A reusable barrier with a changing number of parties, like {@link java.util.concurrent.Phaser}, implement by AQS.
+ * The long AQS state packs the phase, the registered parties and the parties yet to arrive, so an arrival is one CAS
+ * and the waiting threads queue in AQS until the phase number changes.
+ *
+ * With hundreds of parties every arrival at one phaser contends on that one state word. Phasers can therefore form a
+ * tree: a child phaser counts the arrivals of its own parties and arrives at its parent once, when the last of them
+ * arrived, so the root only sees one arrival per child. When the root advances, the phase is pushed down the tree and
+ * every phaser wakes its own waiters. {@link #tree(int, int)} builds such a tree for a given number of parties.
+ *
+ * At most 65535 parties can be registered with one phaser. The phase number wraps around to 0 after
+ * Integer.MAX_VALUE, and is negative once the phaser terminated: by default when the last party deregisters, see
+ * {@link #onAdvance(int, int)}.
+ *
+ * @author hechuan
+ */
+public class MyPhaser {
+
+    private static final int MAX_PARTIES = 0xffff;
+    private static final int PARTIES_SHIFT = 16;
+    private static final int PHASE_SHIFT = 32;
+    private static final long ONE_ARRIVAL = 1L;
+    private static final long ONE_PARTY = 1L << PARTIES_SHIFT;
+    private static final long ONE_DEREGISTER = ONE_PARTY | ONE_ARRIVAL;
+
+    private final MyPhaser parent;
+    private final MyPhaser root;
+    private final List<MyPhaser> children = new CopyOnWriteArrayList<>();
+    private final Sync sync;
+
+    /**
+     * The state: phase in the upper 32 bits, registered parties in the next 16, unarrived parties in the lowest 16.
+     * The phase only changes when the last party arrives, so waiters acquire in shared mode until it differs from the
+     * phase they arrived at, and the last arrival releases them all.
+     */
+    private static final class Sync extends AbstractQueuedLongSynchronizer {
+
+        private static final long serialVersionUID = 1L;
+
+        Sync(long state) {
+            setState(state);
+        }
+
+        /**
+         * @param phase the phase the caller waits to end
+         */
+        @Override
+        protected long tryAcquireShared(long phase) {
+            return phaseOf(getState()) != (int) phase ? 1L : -1L;
+        }
+
+        /**
+         * The caller has already changed the phase, just wake the waiters.
+         */
+        @Override
+        protected boolean tryReleaseShared(long ignored) {
+            return true;
+        }
+
+        long state() {
+            return getState();
+        }
+
+        boolean cas(long expect, long update) {
+            return compareAndSetState(expect, update);
+        }
+    }
+
+    public MyPhaser() {
+        this(null, 0);
+    }
+
+    public MyPhaser(int parties) {
+        this(null, parties);
+    }
+
+    /**
+     * Creates a child of the given parent. While it has registered parties the child is one party of the parent.
+     */
+    public MyPhaser(MyPhaser parent, int parties) {
+        if (parties < 0 || parties > MAX_PARTIES) {
+            throw new IllegalArgumentException("Parties must be in [0, 65535]!");
+        }
+        this.parent = parent;
+        if (parent == null) {
+            root = this;
+            sync = new Sync(stateOf(0, parties, parties));
+        } else {
+            root = parent.root;
+            sync = new Sync(stateOf(parent.getPhase(), 0, 0));
+            parent.children.add(this);
+            if (parties > 0) { doRegister(parties); }
+        }
+    }
+
+    /**
+     * Builds a tree of phasers for the given number of parties, with at most fanOut parties or children per phaser,
+     * and registers the parties with the leaves.
+     *
+     * @return the leaf each party arrives at, index i for party i; the root is the root of any of them
+     */
+    public static MyPhaser[] tree(int parties, int fanOut) {
+        if (parties <= 0) { throw new IllegalArgumentException("Parties must be large than 0!"); }
+        if (fanOut < 2) { throw new IllegalArgumentException("Fan-out must be at least 2!"); }
+        final MyPhaser[] leaves = new MyPhaser[parties];
+        attach(new MyPhaser(), leaves, 0, parties, fanOut);
+        return leaves;
+    }
+
+    private static void attach(MyPhaser node, MyPhaser[] leaves, int from, int to, int fanOut) {
+        final int n = to - from;
+        if (n <= fanOut) {
+            node.bulkRegister(n);
+            for (int i = from; i < to; i++) {
+                leaves[i] = node;
+            }
+            return;
+        }
+        final int size = (n + fanOut - 1) / fanOut;
+        for (int start = from; start < to; start += size) {
+            attach(new MyPhaser(node, 0), leaves, start, Math.min(start + size, to), fanOut);
+        }
+    }
+
+    /**
+     * Adds a party. If the phaser is just advancing, waits until the next phase began.
+     *
+     * @return the phase the party arrives at first, negative if the phaser terminated
+     * @throws IllegalStateException if 65535 parties are registered already
+     */
+    public int register() {
+        return doRegister(1);
+    }
+
+    public int bulkRegister(int parties) {
+        if (parties < 0) { throw new IllegalArgumentException("Parties must not be negative!"); }
+        if (parties == 0) { return getPhase(); }
+        return doRegister(parties);
+    }
+
+    private int doRegister(int registrations) {
+        final long adjust = registrations * (ONE_PARTY | ONE_ARRIVAL);
+        for (;;) {
+            final long s = sync.state();
+            final int phase = phaseOf(s);
+            if (phase < 0) { return phase; }
+            final int parties = partiesOf(s);
+            if (parties + registrations > MAX_PARTIES) { throw new IllegalStateException("Too many parties!"); }
+            if (parties == 0 && parent != null) {
+                final Integer joined = joinParent(s, registrations);
+                if (joined != null) { return joined; }
+            } else if (parties > 0 && unarrivedOf(s) == 0) {
+                // Every party arrived and the phase is about to advance, register for the next one.
+                awaitAdvance(phase);
+            } else if (sync.cas(s, s + adjust)) {
+                return phase;
+            }
+        }
+    }
+
+    /**
+     * The first registration of a child: it becomes a party of its parent first, and takes over the parent's phase,
+     * which may have moved on while the child had no parties.
+     *
+     * @return the phase, or null if the state changed meanwhile and the registration must be retried
+     */
+    private synchronized Integer joinParent(long s, int registrations) {
+        if (sync.state() != s) { return null; }
+        final int phase = parent.doRegister(1);
+        if (phase < 0) { return phase; }
+        for (;;) {
+            final long current = sync.state();
+            // Terminated since we registered with the parent, which then terminated too.
+            if (phaseOf(current) < 0) { return phaseOf(current); }
+            if (sync.cas(current, stateOf(phase, registrations, registrations))) { return phase; }
+        }
+    }
+
+    /**
+     * Arrives without waiting for the others.
+     *
+     * @return the phase arrived at, negative if the phaser terminated
+     * @throws IllegalStateException if all registered parties arrived already
+     */
+    public int arrive() {
+        return doArrive(ONE_ARRIVAL);
+    }
+
+    /**
+     * Arrives and deregisters without waiting for the others.
+     *
+     * @return the phase arrived at, negative if the phaser terminated
+     */
+    public int arriveAndDeregister() {
+        return doArrive(ONE_DEREGISTER);
+    }
+
+    /**
+     * Arrives and waits for the others, uninterruptibly like {@link java.util.concurrent.Phaser}.
+     *
+     * @return the phase after the advance, negative if the phaser terminated
+     */
+    public int arriveAndAwaitAdvance() {
+        final int phase = doArrive(ONE_ARRIVAL);
+        return phase < 0 ? phase : awaitAdvance(phase);
+    }
+
+    private int doArrive(long adjust) {
+        for (;;) {
+            final long s = sync.state();
+            final int phase = phaseOf(s);
+            if (phase < 0) { return phase; }
+            final int unarrived = unarrivedOf(s);
+            if (unarrived == 0) {
+                throw new IllegalStateException(partiesOf(s) == 0 ? "No registered parties!"
+                        : "More arrivals than registered parties!");
+            }
+            final long next = s - adjust;
+            if (!sync.cas(s, next)) { continue; }
+            if (unarrived == 1) {
+                final int parties = partiesOf(next);
+                if (parent == null) {
+                    advance(phase, onAdvance(phase, parties) ? phase | Integer.MIN_VALUE : nextPhase(phase));
+                } else {
+                    // Arrive at the parent for all of the child's parties; deregister if none is left.
+                    parent.doArrive(parties == 0 ? ONE_DEREGISTER : ONE_ARRIVAL);
+                }
+            }
+            return phase;
+        }
+    }
+
+    /**
+     * Called by the last arrival at the root: starts the next phase and pushes it down the tree. Only a registration
+     * at a root without parties or a forced termination can change the state meanwhile.
+     */
+    private void advance(int phase, int next) {
+        for (;;) {
+            final long s = sync.state();
+            if (phaseOf(s) != phase) { return; }
+            final int parties = partiesOf(s);
+            if (sync.cas(s, stateOf(next, parties, parties))) { break; }
+        }
+        sync.releaseShared(0L);
+        for (MyPhaser child : children) {
+            if (next < 0) {
+                child.terminate();
+            } else {
+                child.parentAdvanced(phase, next);
+            }
+        }
+    }
+
+    /**
+     * Starts the next phase of a child whose parties all arrived at the ended one. A child without parties took no
+     * part in the phase, and one that is already further, because it joined the parent after the advance, is left
+     * alone: the cascade may reach it late.
+     */
+    private void parentAdvanced(int phase, int next) {
+        for (;;) {
+            final long s = sync.state();
+            if (phaseOf(s) != phase || partiesOf(s) == 0 || unarrivedOf(s) != 0) { return; }
+            final int parties = partiesOf(s);
+            if (sync.cas(s, stateOf(next, parties, parties))) { break; }
+        }
+        sync.releaseShared(0L);
+        for (MyPhaser child : children) {
+            child.parentAdvanced(phase, next);
+        }
+    }
+
+    private void terminate() {
+        for (;;) {
+            final long s = sync.state();
+            if (phaseOf(s) < 0) { break; }
+            if (sync.cas(s, s | (long) Integer.MIN_VALUE << PHASE_SHIFT)) {
+                sync.releaseShared(0L);
+                break;
+            }
+        }
+        for (MyPhaser child : children) {
+            child.terminate();
+        }
+    }
+
+    /**
+     * Waits until the phaser advanced past the given phase, uninterruptibly.
+     *
+     * @return the current phase, at once if it is not the given phase
+     */
+    public int awaitAdvance(int phase) {
+        if (phase < 0) { return phase; }
+        if (getPhase() == phase) { tracked().sync.acquireShared(phase); }
+        return getPhase();
+    }
+
+    public int awaitAdvanceInterruptibly(int phase) throws InterruptedException {
+        if (phase < 0) { return phase; }
+        if (getPhase() == phase) { tracked().sync.acquireSharedInterruptibly(phase); }
+        return getPhase();
+    }
+
+    /**
+     * @throws TimeoutException if the phase did not advance within the timeout
+     */
+    public int awaitAdvanceInterruptibly(int phase, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        if (phase < 0) { return phase; }
+        if (getPhase() == phase && !tracked().sync.tryAcquireSharedNanos(phase, unit.toNanos(timeout))) {
+            throw new TimeoutException();
+        }
+        return getPhase();
+    }
+
+    /**
+     * @return the phaser whose phase {@link #getPhase()} reports, the root for a child without parties
+     */
+    private MyPhaser tracked() {
+        return parent == null || partiesOf(sync.state()) != 0 ? this : root;
+    }
+
+    /**
+     * Terminates the whole tree and releases all waiters.
+     */
+    public void forceTermination() {
+        root.terminate();
+    }
+
+    /**
+     * Called by the last arrival at the root before the phase advances.
+     *
+     * @param registeredParties the parties registered with the root for the next phase
+     * @return true to terminate the phaser; by default when no party is registered any more
+     */
+    protected boolean onAdvance(int phase, int registeredParties) {
+        return registeredParties == 0;
+    }
+
+    /**
+     * @return the current phase, negative if the phaser terminated
+     */
+    public final int getPhase() {
+        final long s = sync.state();
+        // A child without parties is not kept up to date by the advances of the root.
+        return parent == null || partiesOf(s) != 0 || phaseOf(s) < 0 ? phaseOf(s) : root.getPhase();
+    }
+
+    public int getRegisteredParties() {
+        return partiesOf(sync.state());
+    }
+
+    public int getUnarrivedParties() {
+        return unarrivedOf(sync.state());
+    }
+
+    public int getArrivedParties() {
+        final long s = sync.state();
+        return partiesOf(s) - unarrivedOf(s);
+    }
+
+    public boolean isTerminated() {
+        return getPhase() < 0;
+    }
+
+    public MyPhaser getParent() {
+        return parent;
+    }
+
+    public MyPhaser getRoot() {
+        return root;
+    }
+
+    @Override
+    public String toString() {
+        final long s = sync.state();
+        return super.toString() + "[phase = " + phaseOf(s) + ", parties = " + partiesOf(s)
+                + ", arrived = " + (partiesOf(s) - unarrivedOf(s)) + "]";
+    }
+
+    private static int nextPhase(int phase) {
+        return (phase + 1) & Integer.MAX_VALUE;
+    }
+
+    private static int phaseOf(long s) {
+        return (int) (s >>> PHASE_SHIFT);
+    }
+
+    private static int partiesOf(long s) {
+        return (int) (s >>> PARTIES_SHIFT) & MAX_PARTIES;
+    }
+
+    private static int unarrivedOf(long s) {
+        return (int) s & MAX_PARTIES;
+    }
+
+    private static long stateOf(int phase, int parties, int unarrived) {
+        return (long) phase << PHASE_SHIFT | (long) parties << PARTIES_SHIFT | unarrived;
+    }
+}
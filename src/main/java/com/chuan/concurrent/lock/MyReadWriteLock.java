@@ -0,0 +1,427 @@
+package com.chuan.concurrent.lock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+/**
+ * A read-write lock implement by AQS, preferring writers.
+ *
+ * The AQS state holds the number of read holds in its upper 16 bits and the write hold count in its lower 16 bits. The
+ * write lock is reentrant and its owner may also take the read lock (downgrading). Once a writer is waiting, newly
+ * arriving readers queue behind it instead of barging in, so a steady stream of readers can not starve writers. For
+ * the same reason the read lock is not reentrant: a thread holding it must not acquire it again while a writer may be
+ * waiting.
+ *
+ * In reader-biased mode, readers do not touch the AQS state at all while no writer is around: each reader increments
+ * a counter in one of several padded stripes chosen by its thread, so readers on different cores do not bounce the
+ * same cache line. A writer first acquires the AQS write lock, which sends every new reader to the AQS path, then
+ * revokes the bias and waits for the stripes to drain. Revocation is expensive, so the bias is only restored by a
+ * reader after a while (9 times the last revocation).
+ *
+ * @author hechuan
+ */
+public class MyReadWriteLock implements ReadWriteLock {
+
+    private final Sync sync;
+    /** Null unless reader-biased. */
+    private final ReaderBias bias;
+    private final ReadLock readLock;
+    private final WriteLock writeLock;
+
+    public MyReadWriteLock() {
+        this(false);
+    }
+
+    /**
+     * @param readerBiased if true, readers count themselves in per-core stripes instead of the AQS state while no
+     *        writer is active. Meant for data read very often and written rarely; in this mode the write lock does
+     *        not support conditions.
+     */
+    public MyReadWriteLock(boolean readerBiased) {
+        sync = new Sync();
+        bias = readerBiased ? new ReaderBias() : null;
+        readLock = new ReadLock();
+        writeLock = new WriteLock();
+    }
+
+    @Override
+    public Lock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public Lock writeLock() {
+        return writeLock;
+    }
+
+    public boolean isReaderBiased() {
+        return bias != null;
+    }
+
+    public boolean isWriteLocked() {
+        return sync.isWriteLocked();
+    }
+
+    public boolean isWriteLockedByCurrentThread() {
+        return sync.isHeldExclusively();
+    }
+
+    /**
+     * @return the number of read holds, including the ones in the reader stripes; may already be stale
+     */
+    public int getReadLockCount() {
+        int count = sync.getReadHolds();
+        return bias == null ? count : count + (int) bias.sum();
+    }
+
+    public boolean hasQueuedThreads() {
+        return sync.hasQueuedThreads();
+    }
+
+    private final class ReadLock implements Lock {
+
+        @Override
+        public void lock() {
+            if (tryFastAcquire()) { return; }
+            sync.acquireShared(1);
+            afterSlowAcquire();
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted()) { throw new InterruptedException(); }
+            if (tryFastAcquire()) { return; }
+            sync.acquireSharedInterruptibly(1);
+            afterSlowAcquire();
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (tryFastAcquire()) { return true; }
+            if (sync.tryAcquireShared(1) < 0) { return false; }
+            afterSlowAcquire();
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            if (Thread.interrupted()) { throw new InterruptedException(); }
+            if (tryFastAcquire()) { return true; }
+            if (!sync.tryAcquireSharedNanos(1, unit.toNanos(time))) { return false; }
+            afterSlowAcquire();
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            if (bias != null) {
+                ReaderBias.Holds holds = bias.holds.get();
+                if (holds.fast > 0) {
+                    bias.fastRelease(holds);
+                    return;
+                }
+            }
+            sync.releaseShared(1);
+        }
+
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException();
+        }
+
+        private boolean tryFastAcquire() {
+            return bias != null && bias.tryFastAcquire(bias.holds.get());
+        }
+
+        /**
+         * Holding the AQS read lock, no writer can be active unless it is the current thread downgrading: a good
+         * moment to restore the reader bias.
+         */
+        private void afterSlowAcquire() {
+            if (bias != null && !isWriteLocked()) { bias.maybeEnable(); }
+        }
+    }
+
+    private final class WriteLock implements Lock {
+
+        @Override
+        public void lock() {
+            if (!sync.tryAcquire(1)) {
+                sync.waitingWriters.incrementAndGet();
+                try {
+                    sync.acquire(1);
+                } finally {
+                    sync.waitingWriters.decrementAndGet();
+                }
+            }
+            if (bias != null) { bias.revoke(false, Long.MAX_VALUE); }
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            if (Thread.interrupted()) { throw new InterruptedException(); }
+            if (!sync.tryAcquire(1)) {
+                sync.waitingWriters.incrementAndGet();
+                try {
+                    sync.acquireInterruptibly(1);
+                } finally {
+                    sync.waitingWriters.decrementAndGet();
+                }
+            }
+            if (bias != null && !bias.revoke(true, Long.MAX_VALUE)) {
+                sync.release(1);
+                Thread.interrupted();
+                throw new InterruptedException();
+            }
+        }
+
+        @Override
+        public boolean tryLock() {
+            if (!sync.tryAcquire(1)) { return false; }
+            if (bias != null && !bias.revoke(false, 0L)) {
+                sync.release(1);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            if (Thread.interrupted()) { throw new InterruptedException(); }
+            final long deadline = System.nanoTime() + unit.toNanos(time);
+            if (!sync.tryAcquire(1)) {
+                sync.waitingWriters.incrementAndGet();
+                try {
+                    if (!sync.tryAcquireNanos(1, unit.toNanos(time))) { return false; }
+                } finally {
+                    sync.waitingWriters.decrementAndGet();
+                }
+            }
+            if (bias != null && !bias.revoke(true, deadline - System.nanoTime())) {
+                sync.release(1);
+                if (Thread.interrupted()) { throw new InterruptedException(); }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+            sync.release(1);
+        }
+
+        /**
+         * A condition wait re-acquires the AQS write lock directly, without revoking the reader bias, so conditions
+         * are only supported without it.
+         */
+        @Override
+        public Condition newCondition() {
+            if (bias != null) { throw new UnsupportedOperationException(); }
+            return sync.newCondition();
+        }
+    }
+
+    private static final class Sync extends AbstractQueuedSynchronizer {
+
+        static final int SHARED_SHIFT = 16;
+        static final int SHARED_UNIT = 1 << SHARED_SHIFT;
+        static final int MAX_COUNT = (1 << SHARED_SHIFT) - 1;
+        static final int EXCLUSIVE_MASK = (1 << SHARED_SHIFT) - 1;
+
+        /** Writers queued or about to queue in AQS. */
+        final AtomicInteger waitingWriters = new AtomicInteger();
+
+        static int sharedCount(int c) { return c >>> SHARED_SHIFT; }
+
+        static int exclusiveCount(int c) { return c & EXCLUSIVE_MASK; }
+
+        protected Condition newCondition() { return new ConditionObject(); }
+
+        @Override
+        protected boolean tryAcquire(int acquires) {
+            final Thread current = Thread.currentThread();
+            int c = getState();
+            if (c != 0) {
+                // Readers present, or another writer.
+                if (exclusiveCount(c) == 0 || getExclusiveOwnerThread() != current) { return false; }
+                if (exclusiveCount(c) + acquires > MAX_COUNT) { throw new Error("Maximum lock count exceeded"); }
+                setState(c + acquires);
+                return true;
+            }
+            if (!compareAndSetState(0, acquires)) { return false; }
+            setExclusiveOwnerThread(current);
+            return true;
+        }
+
+        @Override
+        protected boolean tryRelease(int releases) {
+            if (!isHeldExclusively()) { throw new IllegalMonitorStateException(); }
+            int c = getState() - releases;
+            boolean free = exclusiveCount(c) == 0;
+            if (free) { setExclusiveOwnerThread(null); }
+            setState(c);
+            return free;
+        }
+
+        @Override
+        protected int tryAcquireShared(int unused) {
+            final Thread current = Thread.currentThread();
+            for (;;) {
+                int c = getState();
+                if (exclusiveCount(c) != 0) {
+                    // Only the writer itself may read while the write lock is held.
+                    if (getExclusiveOwnerThread() != current) { return -1; }
+                } else if (readerShouldBlock()) {
+                    return -1;
+                }
+                if (sharedCount(c) == MAX_COUNT) { throw new Error("Maximum lock count exceeded"); }
+                if (compareAndSetState(c, c + SHARED_UNIT)) { return 1; }
+            }
+        }
+
+        @Override
+        protected boolean tryReleaseShared(int unused) {
+            for (;;) {
+                int c = getState();
+                if (sharedCount(c) == 0) { throw new IllegalMonitorStateException(); }
+                int next = c - SHARED_UNIT;
+                // Wake a queued writer once the last reader is gone.
+                if (compareAndSetState(c, next)) { return next == 0; }
+            }
+        }
+
+        /**
+         * Writer preference: a reader waits while a writer is waiting, unless it is itself first in the queue, in
+         * which case the writers are queued behind it and blocking it would block them all.
+         */
+        private boolean readerShouldBlock() {
+            return waitingWriters.get() > 0 && hasQueuedPredecessors();
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return getExclusiveOwnerThread() == Thread.currentThread();
+        }
+
+        final boolean isWriteLocked() {
+            return exclusiveCount(getState()) != 0;
+        }
+
+        final int getReadHolds() {
+            return sharedCount(getState());
+        }
+    }
+
+    /**
+     * The reader stripes of the reader-biased mode. Each stripe is a counter padded to 128 bytes, indexed by a hash of
+     * the reader thread.
+     */
+    private static final class ReaderBias {
+
+        /** Longs per stripe, 128 bytes to also keep the adjacent-line prefetcher out. */
+        private static final int STRIDE = 16;
+        private static final int INHIBIT_FACTOR = 9;
+        private static final int SPINS = 64;
+
+        private final AtomicLongArray cells;
+        private final int mask;
+        private volatile boolean enabled = true;
+        /** Until when the bias stays revoked, in System.nanoTime(). */
+        private volatile long inhibitUntil;
+
+        final ThreadLocal<Holds> holds = ThreadLocal.withInitial(this::newHolds);
+
+        ReaderBias() {
+            int cpus = Runtime.getRuntime().availableProcessors();
+            int stripes = cpus <= 1 ? 1 : Integer.highestOneBit(cpus - 1) << 1;
+            mask = stripes - 1;
+            cells = new AtomicLongArray((stripes + 1) * STRIDE);
+            inhibitUntil = System.nanoTime();
+        }
+
+        /**
+         * The per-thread stripe index, and the read holds taken through the stripe, which the unlock has to return to
+         * it rather than to AQS.
+         */
+        static final class Holds {
+            final int cell;
+            int fast;
+
+            Holds(int cell) {
+                this.cell = cell;
+            }
+        }
+
+        private Holds newHolds() {
+            long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+            int stripe = (int) (h >>> 32) & mask;
+            // Skip the first STRIDE longs so that no stripe shares a line with the array header.
+            return new Holds((stripe + 1) * STRIDE);
+        }
+
+        boolean tryFastAcquire(Holds holds) {
+            if (!enabled) { return false; }
+            cells.getAndIncrement(holds.cell);
+            // Pairs with revoke(): either the writer sees our increment, or we see the bias disabled.
+            if (enabled) {
+                holds.fast++;
+                return true;
+            }
+            cells.getAndDecrement(holds.cell);
+            return false;
+        }
+
+        void fastRelease(Holds holds) {
+            holds.fast--;
+            cells.getAndDecrement(holds.cell);
+        }
+
+        /**
+         * Called by the writer holding the AQS write lock: disables the bias, then waits for the readers already in
+         * the stripes to leave.
+         *
+         * @return false if the readers did not drain within the timeout, or the thread was interrupted while
+         *         interruptible; the bias stays disabled in that case
+         */
+        boolean revoke(boolean interruptible, long nanosTimeout) {
+            if (!enabled) { return true; }
+            final long start = System.nanoTime();
+            enabled = false;
+            for (int i = STRIDE; i < cells.length(); i += STRIDE) {
+                int spins = 0;
+                while (cells.get(i) != 0) {
+                    if (System.nanoTime() - start >= nanosTimeout) { return false; }
+                    if (interruptible && Thread.currentThread().isInterrupted()) { return false; }
+                    if (++spins < SPINS) {
+                        Thread.onSpinWait();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }
+            long now = System.nanoTime();
+            inhibitUntil = now + (now - start) * INHIBIT_FACTOR;
+            return true;
+        }
+
+        /**
+         * Called by a reader holding the AQS read lock, so no writer is active.
+         */
+        void maybeEnable() {
+            if (!enabled && System.nanoTime() - inhibitUntil >= 0) { enabled = true; }
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = STRIDE; i < cells.length(); i += STRIDE) {
+                sum += cells.get(i);
+            }
+            return sum;
+        }
+    }
+}
@@ -8,40 +8,162 @@ import java.util.concurrent.locks.Lock;
 /**
  * An shared unfair lock implement by AQS.
  *
+ * The lock holds a configurable number of permits, 2 by default. {@link #lock()} and {@link #unlock()} move one
+ * permit, {@link #acquire(int)}, {@link #tryAcquire(int, long, TimeUnit)} and {@link #release(int)} move several at
+ * once, which makes the lock usable as a concurrency limiter. Releasing can never raise the permits above the
+ * configured maximum.
+ *
+ * A thread that finds no permit left spins with {@link Thread#onSpinWait()} for an adaptive number of rounds, see
+ * {@link AdaptiveSpin}, before it enqueues and parks. Spinning can be tuned or disabled per instance with
+ * {@link #setMaxSpins(int)}.
+ *
+ * Contention statistics are off by default and can be switched on at runtime with {@link #enableStats(String)}, see
+ * {@link LockStats}. Each acquire starts a hold that the next release by the same thread ends.
+ *
  * @author hechuan
  */
 public class MySharedLock implements Lock {
 
     private final Sync sync;
+    /** Null while statistics are disabled. */
+    private volatile LockStats stats;
 
     public MySharedLock() {
-        this.sync = new Sync(2);
+        this(2);
     }
 
+    /**
+     * @param permits the maximum number of permits, all available initially
+     */
+    public MySharedLock(int permits) {
+        this(permits, AdaptiveSpin.DEFAULT_MAX_SPINS);
+    }
+
+    /**
+     * @param permits the maximum number of permits, all available initially
+     * @param maxSpins upper bound of the adaptive spin before parking, 0 disables spinning
+     */
+    public MySharedLock(int permits, int maxSpins) {
+        this.sync = new Sync(permits, new AdaptiveSpin(maxSpins));
+    }
 
     @Override
     public void lock() {
-        sync.acquireShared(1);
+        acquire(1);
     }
 
     @Override
     public void lockInterruptibly() throws InterruptedException {
-        sync.acquireSharedInterruptibly(1);
+        acquireInterruptibly(1);
     }
 
     @Override
     public boolean tryLock() {
-        return sync.tryAcquireShared(1) >= 0;
+        return tryAcquire(1);
     }
 
     @Override
     public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
-        return sync.tryAcquireSharedNanos(1, unit.toNanos(time));
+        return tryAcquire(1, time, unit);
     }
 
     @Override
     public void unlock() {
-        sync.releaseShared(1);
+        release(1);
+    }
+
+    /**
+     * Acquires the given number of permits, blocking until they are all available.
+     */
+    public void acquire(int permits) {
+        sync.checkPermits(permits);
+        final LockStats stats = this.stats;
+        if (sync.tryAcquireShared(permits) >= 0) {
+            if (stats != null) { stats.acquired(true); }
+            return;
+        }
+        long start = stats == null ? 0L : System.nanoTime();
+        boolean queued = !sync.spinAcquireShared(permits);
+        if (queued) { sync.acquireShared(permits); }
+        if (stats != null) { stats.contended(start, queued); }
+    }
+
+    /**
+     * Acquires the given number of permits, blocking until they are all available or the thread is interrupted.
+     */
+    public void acquireInterruptibly(int permits) throws InterruptedException {
+        sync.checkPermits(permits);
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        final LockStats stats = this.stats;
+        if (sync.tryAcquireShared(permits) >= 0) {
+            if (stats != null) { stats.acquired(true); }
+            return;
+        }
+        long start = stats == null ? 0L : System.nanoTime();
+        boolean queued = !sync.spinAcquireShared(permits);
+        if (queued) { sync.acquireSharedInterruptibly(permits); }
+        if (stats != null) { stats.contended(start, queued); }
+    }
+
+    /**
+     * Acquires the given number of permits only if they are all available right now.
+     */
+    public boolean tryAcquire(int permits) {
+        sync.checkPermits(permits);
+        if (sync.tryAcquireShared(permits) < 0) { return false; }
+        final LockStats stats = this.stats;
+        if (stats != null) { stats.acquired(true); }
+        return true;
+    }
+
+    /**
+     * Acquires the given number of permits, waiting up to the timeout for them to become available.
+     *
+     * @return false if the permits were still not available when the timeout elapsed
+     */
+    public boolean tryAcquire(int permits, long timeout, TimeUnit unit) throws InterruptedException {
+        sync.checkPermits(permits);
+        final LockStats stats = this.stats;
+        if (stats == null) { return sync.tryAcquireSharedNanos(permits, unit.toNanos(timeout)); }
+        if (sync.tryAcquireShared(permits) >= 0) {
+            stats.acquired(true);
+            return true;
+        }
+        long start = System.nanoTime();
+        if (sync.tryAcquireSharedNanos(permits, unit.toNanos(timeout))) {
+            stats.contended(start, true);
+            return true;
+        }
+        stats.timedOut(start);
+        return false;
+    }
+
+    /**
+     * Releases the given number of permits.
+     *
+     * @throws IllegalMonitorStateException if this would raise the available permits above the maximum, i.e. more
+     *         permits are released than were acquired
+     */
+    public void release(int permits) {
+        sync.checkPermits(permits);
+        sync.releaseShared(permits);
+        final LockStats stats = this.stats;
+        if (stats != null) { stats.released(true); }
+    }
+
+    /**
+     * @return the number of permits available right now, which may already be stale
+     */
+    public int availablePermits() {
+        return sync.getPermits();
+    }
+
+    public int getMaxPermits() {
+        return sync.maxPermits;
+    }
+
+    public boolean hasQueuedThreads() {
+        return sync.hasQueuedThreads();
     }
 
     @Override
@@ -49,11 +171,103 @@ public class MySharedLock implements Lock {
         return sync.newCondition();
     }
 
+    /**
+     * @param maxSpins upper bound of the adaptive spin before parking, 0 disables spinning
+     */
+    public void setMaxSpins(int maxSpins) {
+        sync.spin.setMaxSpins(maxSpins);
+    }
+
+    public int getMaxSpins() {
+        return sync.spin.getMaxSpins();
+    }
+
+    /**
+     * Starts collecting contention statistics without registering them with JMX.
+     *
+     * @return the statistics, the existing ones if already enabled
+     */
+    public synchronized LockStats enableStats() {
+        if (stats == null) { stats = new LockStats(null, MySharedLock.class); }
+        return stats;
+    }
+
+    /**
+     * Starts collecting contention statistics and registers them as
+     * "com.chuan.concurrent:type=Lock,name=&lt;name&gt;" with the platform MBean server.
+     *
+     * @return the statistics, the existing ones if already enabled
+     * @throws IllegalArgumentException if another bean is registered under the name
+     */
+    public synchronized LockStats enableStats(String name) {
+        if (stats == null) {
+            LockStats s = new LockStats(name, MySharedLock.class);
+            s.register();
+            stats = s;
+        }
+        return stats;
+    }
+
+    /**
+     * Stops collecting statistics and unregisters them from JMX. Threads that are about to record may still do so.
+     */
+    public synchronized void disableStats() {
+        if (stats != null) {
+            stats.unregister();
+            stats = null;
+        }
+    }
+
+    /**
+     * @return the statistics, or null if disabled
+     */
+    public LockStats getStats() {
+        return stats;
+    }
+
     private static class Sync extends AbstractQueuedSynchronizer {
 
-        public Sync(int arg) {
+        final AdaptiveSpin spin;
+        final int maxPermits;
+
+        public Sync(int arg, AdaptiveSpin spin) {
             if (arg <= 0) { throw new IllegalStateException("Initial state must be large than 0!"); }
-            setState(2);
+            setState(arg);
+            this.maxPermits = arg;
+            this.spin = spin;
+        }
+
+        /**
+         * Less than one permit is meaningless, and more than the maximum could never be acquired.
+         */
+        final void checkPermits(int permits) {
+            if (permits <= 0 || permits > maxPermits) {
+                throw new IllegalArgumentException("Permits must be in [1, " + maxPermits + "]!");
+            }
+        }
+
+        final int getPermits() {
+            return getState();
+        }
+
+        /**
+         * Spins for the adaptive budget, retrying whenever enough permits look available.
+         *
+         * @return true if the permits were acquired, false if the caller has to enqueue
+         */
+        final boolean spinAcquireShared(int arg) {
+            final AdaptiveSpin spin = this.spin;
+            final int budget = spin.budget();
+            if (budget == 0) { return false; }
+            for (int spins = 1; spins <= budget; spins++) {
+                Thread.onSpinWait();
+                if (getState() >= arg && tryAcquireShared(arg) >= 0) {
+                    spin.succeeded(spins);
+                    return true;
+                }
+            }
+            spin.failed();
+            return false;
         }
 
         @Override
@@ -71,8 +285,11 @@ public class MySharedLock implements Lock {
         protected boolean tryReleaseShared(int arg) {
             for (;;) {
                 int state = getState();
-                int newState = state + arg;
-                if (compareAndSetState(state, newState)) { return true; }
+                // Compare before adding, state + arg may overflow when maxPermits is near Integer.MAX_VALUE.
+                if (arg > maxPermits - state) {
+                    throw new IllegalMonitorStateException("Released more permits than acquired!");
+                }
+                if (compareAndSetState(state, state + arg)) { return true; }
             }
         }
 
@@ -0,0 +1,310 @@
+package com.chuan.concurrent.lock;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.AbstractQueuedLongSynchronizer;
+
+/**
+ * A capability-based lock with write, read and optimistic read modes in the style of
+ * {@link java.util.concurrent.locks.StampedLock}, implement by AQS over a long state.
+ *
+ * The state holds the number of readers in its lowest 16 bits, a write bit above them, and a version in the remaining
+ * upper bits. Acquiring the write lock adds the write bit, releasing it adds it once more, which clears the bit and
+ * carries into the version. Every lock method returns a stamp that has to be passed back to unlock or convert it: a
+ * write stamp is the state with the write bit set, a read stamp the version with a reader count of 1, and an
+ * optimistic stamp the bare version.
+ *
+ * An optimistic read does not write to shared memory at all: {@link #tryOptimisticRead()} returns the current version
+ * (0 if the write lock is held), the caller reads its fields into locals, and {@link #validate(long)} then tells
+ * whether a writer has acquired the lock in between, in which case the values read must be discarded. Readers of small
+ * snapshots therefore scale with the number of cores instead of bouncing the lock word.
+ *
+ * Like {@link MyReadWriteLock}, newly arriving readers queue behind a waiting writer. The lock is not reentrant and
+ * has no owner, so a stamp may be released by another thread.
+ *
+ * @author hechuan
+ */
+public class MyStampedLock {
+
+    private static final int READER_BITS = 16;
+    private static final long RUNIT = 1L;
+    private static final long RBITS = (1L << READER_BITS) - 1;
+    private static final long WBIT = 1L << READER_BITS;
+    /** Version and write bit. */
+    private static final long SBITS = ~RBITS;
+    /** Readers and write bit. */
+    private static final long ABITS = RBITS | WBIT;
+    /** Initial state: version 1, so that 0 is never a valid stamp. */
+    private static final long ORIGIN = WBIT << 1;
+
+    private final Sync sync = new Sync();
+
+    /**
+     * Acquires the write lock, blocking until it is available.
+     *
+     * @return a write stamp for {@link #unlockWrite(long)} or a conversion
+     */
+    public long writeLock() {
+        if (!sync.tryAcquire(1)) {
+            sync.waitingWriters.incrementAndGet();
+            try {
+                sync.acquire(1);
+            } finally {
+                sync.waitingWriters.decrementAndGet();
+            }
+        }
+        return sync.stamp();
+    }
+
+    /**
+     * @return a write stamp, or 0 if the lock is not immediately available
+     */
+    public long tryWriteLock() {
+        return sync.tryAcquire(1) ? sync.stamp() : 0L;
+    }
+
+    /**
+     * @return a write stamp, or 0 if the lock did not become available within the timeout
+     */
+    public long tryWriteLock(long time, TimeUnit unit) throws InterruptedException {
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        if (sync.tryAcquire(1)) { return sync.stamp(); }
+        sync.waitingWriters.incrementAndGet();
+        try {
+            return sync.tryAcquireNanos(1, unit.toNanos(time)) ? sync.stamp() : 0L;
+        } finally {
+            sync.waitingWriters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Acquires a read lock, blocking while the write lock is held or a writer is waiting.
+     *
+     * @return a read stamp for {@link #unlockRead(long)} or a conversion
+     */
+    public long readLock() {
+        sync.acquireShared(1);
+        return readStamp(sync.stamp());
+    }
+
+    /**
+     * @return a read stamp, or 0 if the lock is not immediately available
+     */
+    public long tryReadLock() {
+        return sync.tryAcquireShared(1) >= 0 ? readStamp(sync.stamp()) : 0L;
+    }
+
+    /**
+     * @return a read stamp, or 0 if the lock did not become available within the timeout
+     */
+    public long tryReadLock(long time, TimeUnit unit) throws InterruptedException {
+        return sync.tryAcquireSharedNanos(1, unit.toNanos(time)) ? readStamp(sync.stamp()) : 0L;
+    }
+
+    /**
+     * @return a stamp for {@link #validate(long)}, or 0 if the write lock is held
+     */
+    public long tryOptimisticRead() {
+        long s = sync.stamp();
+        return (s & WBIT) == 0L ? s & SBITS : 0L;
+    }
+
+    /**
+     * @return true if the write lock has not been acquired since the stamp was issued, always false for stamp 0
+     */
+    public boolean validate(long stamp) {
+        // Order the reads of the caller's fields before the re-read of the state.
+        VarHandle.acquireFence();
+        return (stamp & SBITS) == (sync.stamp() & SBITS);
+    }
+
+    public void unlockWrite(long stamp) {
+        if (sync.stamp() != stamp || (stamp & WBIT) == 0L) { throw new IllegalMonitorStateException(); }
+        sync.release(1);
+    }
+
+    public void unlockRead(long stamp) {
+        long s = sync.stamp();
+        if ((stamp & SBITS) != (s & SBITS) || (stamp & RBITS) == 0L || (s & RBITS) == 0L) {
+            throw new IllegalMonitorStateException();
+        }
+        sync.releaseShared(1);
+    }
+
+    /**
+     * Releases the read or write lock the stamp stands for.
+     */
+    public void unlock(long stamp) {
+        if ((stamp & WBIT) != 0L) {
+            unlockWrite(stamp);
+        } else if ((stamp & RBITS) != 0L) {
+            unlockRead(stamp);
+        } else {
+            throw new IllegalMonitorStateException();
+        }
+    }
+
+    /**
+     * Upgrades a stamp to a write stamp: returns a write stamp as is, converts a read stamp if the caller is the only
+     * reader, and converts a still valid optimistic stamp if the lock is free.
+     *
+     * @return a write stamp, or 0 if the conversion is not possible right now; the original stamp stays valid then
+     */
+    public long tryConvertToWriteLock(long stamp) {
+        for (;;) {
+            long s = sync.stamp();
+            if ((s & SBITS) != (stamp & SBITS)) { return 0L; }
+            if ((stamp & WBIT) != 0L) {
+                return stamp == s ? stamp : 0L;
+            }
+            long next;
+            if ((stamp & RBITS) != 0L) {
+                // Read stamp: only the last reader may upgrade.
+                if ((s & RBITS) != RUNIT) { return 0L; }
+                next = s - RUNIT + WBIT;
+            } else {
+                // Optimistic stamp: the lock must be free.
+                if ((s & ABITS) != 0L) { return 0L; }
+                next = s + WBIT;
+            }
+            if (sync.casState(s, next)) { return next; }
+        }
+    }
+
+    /**
+     * Downgrades a stamp to a read stamp: releases the write lock while acquiring a read lock atomically, returns a
+     * read stamp as is, and converts a still valid optimistic stamp if the write lock is free.
+     *
+     * @return a read stamp, or 0 if the conversion is not possible right now; the original stamp stays valid then
+     */
+    public long tryConvertToReadLock(long stamp) {
+        for (;;) {
+            long s = sync.stamp();
+            if ((s & SBITS) != (stamp & SBITS)) { return 0L; }
+            if ((stamp & WBIT) != 0L) {
+                if (stamp != s) { return 0L; }
+                // Clearing the write bit bumps the version, then wake the readers queued behind the writer.
+                long next = s + WBIT + RUNIT;
+                sync.setStateAndWake(next);
+                return readStamp(next);
+            }
+            if ((stamp & RBITS) != 0L) { return stamp; }
+            if ((s & RBITS) == RBITS) { throw new Error("Maximum lock count exceeded"); }
+            if (sync.casState(s, s + RUNIT)) { return readStamp(s); }
+        }
+    }
+
+    /**
+     * Releases the lock of a read or write stamp and returns an optimistic stamp, or validates an optimistic stamp.
+     *
+     * @return an optimistic stamp, or 0 if the stamp was no longer valid
+     */
+    public long tryConvertToOptimisticRead(long stamp) {
+        long s = sync.stamp();
+        if ((s & SBITS) != (stamp & SBITS)) { return 0L; }
+        if ((stamp & WBIT) != 0L) {
+            unlockWrite(stamp);
+            return (s + WBIT) & SBITS;
+        }
+        if ((stamp & RBITS) != 0L) {
+            unlockRead(stamp);
+        }
+        return stamp & SBITS;
+    }
+
+    public boolean isWriteLocked() {
+        return (sync.stamp() & WBIT) != 0L;
+    }
+
+    public boolean isReadLocked() {
+        return (sync.stamp() & RBITS) != 0L;
+    }
+
+    public int getReadLockCount() {
+        return (int) (sync.stamp() & RBITS);
+    }
+
+    public boolean hasQueuedThreads() {
+        return sync.hasQueuedThreads();
+    }
+
+    /**
+     * A read stamp is the version with a reader count of 1, which tells it apart from an optimistic stamp.
+     */
+    private static long readStamp(long state) {
+        return (state & SBITS) | RUNIT;
+    }
+
+    private static final class Sync extends AbstractQueuedLongSynchronizer {
+
+        /** Writers queued or about to queue in AQS. */
+        final AtomicInteger waitingWriters = new AtomicInteger();
+
+        Sync() {
+            setState(ORIGIN);
+        }
+
+        final long stamp() {
+            return getState();
+        }
+
+        final boolean casState(long expect, long update) {
+            return compareAndSetState(expect, update);
+        }
+
+        /**
+         * Publishes a state that admits readers, then lets AQS propagate the wake-up through the queued readers.
+         */
+        final void setStateAndWake(long state) {
+            setState(state);
+            releaseShared(0);
+        }
+
+        @Override
+        protected boolean tryAcquire(long unused) {
+            long s = getState();
+            return (s & ABITS) == 0L && compareAndSetState(s, s + WBIT);
+        }
+
+        @Override
+        protected boolean tryRelease(long unused) {
+            long s = getState();
+            if ((s & WBIT) == 0L) { throw new IllegalMonitorStateException(); }
+            // Adding the write bit again clears it and increments the version.
+            setState(s + WBIT);
+            return true;
+        }
+
+        @Override
+        protected long tryAcquireShared(long unused) {
+            for (;;) {
+                long s = getState();
+                if ((s & WBIT) != 0L) { return -1L; }
+                if (waitingWriters.get() > 0 && hasQueuedPredecessors()) { return -1L; }
+                if ((s & RBITS) == RBITS) { throw new Error("Maximum lock count exceeded"); }
+                if (compareAndSetState(s, s + RUNIT)) { return 1L; }
+            }
+        }
+
+        /**
+         * A release of 0 releases nothing and only propagates a wake-up, see setStateAndWake().
+         */
+        @Override
+        protected boolean tryReleaseShared(long releases) {
+            if (releases == 0L) { return true; }
+            for (;;) {
+                long s = getState();
+                if ((s & RBITS) == 0L) { throw new IllegalMonitorStateException(); }
+                long next = s - RUNIT;
+                // Wake a queued writer once the last reader is gone.
+                if (compareAndSetState(s, next)) { return (next & ABITS) == 0L; }
+            }
+        }
+
+        @Override
+        protected boolean isHeldExclusively() {
+            return (getState() & WBIT) != 0L;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.chuan.concurrent.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, allocation-free latency histogram with log-linear buckets in the style of HdrHistogram.
+ *
+ * Values below 32 get a bucket each. Above that, every power of two is split into 16 equal sub-buckets, so a recorded
+ * value is off by at most 1/16 (6.25%) of itself. 960 buckets cover every non-negative long, so there is no range to
+ * configure and recording never fails.
+ *
+ * @author hechuan
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** The highest bit of a non-negative long is bit 62, whose sub-buckets end at index 959. */
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+
+    /**
+     * Records one value, negative values count as 0.
+     */
+    public void record(long value) {
+        if (value < 0L) { value = 0L; }
+        counts.getAndIncrement(indexOf(value));
+        total.add(value);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+        total.reset();
+    }
+
+    /**
+     * @return a copy of the current counts; concurrent recordings may or may not be included
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, total.sum());
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) { return (int) value; }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the largest value that falls into the bucket
+     */
+    static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKETS) { return index; }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long lowest = (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return lowest + width - 1 < 0 ? Long.MAX_VALUE : lowest + width - 1;
+    }
+
+    /**
+     * An immutable copy of a histogram.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long total;
+
+        Snapshot(long[] counts, long total) {
+            this.counts = counts;
+            long count = 0;
+            for (long c : counts) {
+                count += c;
+            }
+            this.count = count;
+            this.total = total;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) total / count;
+        }
+
+        /**
+         * @return the upper bound of the highest non-empty bucket, 0 if nothing was recorded
+         */
+        public long getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) { return highestValueOf(i); }
+            }
+            return 0L;
+        }
+
+        /**
+         * @param percentile in [0, 100]
+         * @return the value below or at which the given percentage of the recorded values fall, 0 if nothing was
+         *         recorded
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) { return 0L; }
+            long rank = Math.max(1L, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) { return highestValueOf(i); }
+            }
+            return getMax();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + count + ", mean=" + Math.round(getMean()) + ", p50=" + getValueAtPercentile(50)
+                    + ", p99=" + getValueAtPercentile(99) + ", p99.9=" + getValueAtPercentile(99.9)
+                    + ", max=" + getMax();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.chuan.concurrent.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers the metrics of this project with the platform MBean server, under the domain "com.chuan.concurrent".
+ *
+ * @author hechuan
+ */
+public final class MBeans {
+
+    public static final String DOMAIN = "com.chuan.concurrent";
+
+    private MBeans() {}
+
+    /**
+     * @return the name the bean was registered under
+     * @throws IllegalArgumentException if the name is malformed or already taken
+     */
+    public static ObjectName register(Object bean, String type, String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            server.registerMBean(bean, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Can not register " + type + " " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters the bean if it is still registered.
+     */
+    public static void unregister(ObjectName objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) { server.unregisterMBean(objectName); }
+        } catch (JMException e) {
+            throw new IllegalStateException("Can not unregister " + objectName, e);
+        }
+    }
+}
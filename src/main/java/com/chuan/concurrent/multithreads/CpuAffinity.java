@@ -0,0 +1,98 @@
+package com.chuan.concurrent.multithreads;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+
+/**
+ * Pins the calling thread to a set of CPUs. The JDK has no API for this, so {@link MyThreadFactory} takes it as a
+ * strategy: {@link #noop()} never pins, {@link #taskset()} pins on Linux without native code, and a JNA or JNI
+ * binding can be plugged in the same way.
+ *
+ * @author hechuan
+ */
+public interface CpuAffinity {
+
+    /**
+     * @param cpus the CPU indexes the calling thread may run on, not empty
+     * @return true if the thread is pinned now, false if pinning is not supported or failed
+     */
+    boolean pinCurrentThread(BitSet cpus);
+
+    /**
+     * @return a strategy that never pins
+     */
+    static CpuAffinity noop() {
+        return cpus -> false;
+    }
+
+    /**
+     * @return {@link #taskset()} where it is available, {@link #noop()} elsewhere
+     */
+    static CpuAffinity platformDefault() {
+        return Taskset.AVAILABLE ? taskset() : noop();
+    }
+
+    /**
+     * Pins by running "taskset -p -c &lt;cpus&gt; &lt;tid&gt;" on the native id of the calling thread, read from
+     * /proc/thread-self. That costs a process launch per pinned thread, which is fine for long-lived pool threads and
+     * too slow for short-lived ones. Returns false where /proc/thread-self or taskset is missing.
+     */
+    static CpuAffinity taskset() {
+        return Taskset::pin;
+    }
+}
+
+/**
+ * The Linux stand-in behind {@link CpuAffinity#taskset()}, a class of its own so that the availability check runs
+ * once.
+ */
+final class Taskset {
+
+    private static final Path THREAD_SELF = Paths.get("/proc/thread-self");
+    static final String COMMAND = find("taskset");
+    static final boolean AVAILABLE = COMMAND != null && Files.exists(THREAD_SELF);
+
+    private Taskset() {
+    }
+
+    static boolean pin(BitSet cpus) {
+        if (!AVAILABLE || cpus.isEmpty()) { return false; }
+        try {
+            // The link reads "<pid>/task/<tid>".
+            final String tid = Files.readSymbolicLink(THREAD_SELF).getFileName().toString();
+            final Process process = new ProcessBuilder(COMMAND, "-p", "-c", toList(cpus), tid)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            return process.waitFor() == 0;
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static String toList(BitSet cpus) {
+        StringBuilder sb = new StringBuilder();
+        for (int cpu = cpus.nextSetBit(0); cpu >= 0; cpu = cpus.nextSetBit(cpu + 1)) {
+            if (sb.length() > 0) { sb.append(','); }
+            sb.append(cpu);
+        }
+        return sb.toString();
+    }
+
+    private static String find(String command) {
+        final String path = System.getenv("PATH");
+        if (path == null) { return null; }
+        for (String dir : path.split(File.pathSeparator)) {
+            File file = new File(dir, command);
+            if (file.canExecute()) { return file.getPath(); }
+        }
+        return null;
+    }
+}
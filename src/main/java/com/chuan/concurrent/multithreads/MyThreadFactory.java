@@ -1,15 +1,276 @@
 package com.chuan.concurrent.multithreads;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.BitSet;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * A thread factory configured with a {@link Builder}, in one of two modes.
+ *
+ * Platform threads, the default, get a name, daemon flag, priority, stack size, uncaught exception handler and
+ * optionally a CPU set to be pinned to via a {@link CpuAffinity}, once they start running.
+ *
+ * Virtual threads suit tasks that mostly block: they get a name and an uncaught exception handler, and are always
+ * daemon threads of normal priority on no fixed CPU. They need JDK 21, or JDK 19 or 20 with preview features enabled,
+ * and are looked up reflectively so that the project still builds for 17. Where they are not available the factory
+ * falls back to platform threads, see {@link #isVirtualThreadSupported()}.
+ *
+ * The factory counts the threads it created, how many of them are running and have terminated, and the peak number
+ * running at once, so that thread churn of a pool shows.
+ *
  * @author hechuan
  */
 public class MyThreadFactory implements ThreadFactory {
 
+    /**
+     * Thread.ofVirtual().unstarted(Runnable) as a (Runnable)Thread handle, null if virtual threads are not available.
+     */
+    private static final MethodHandle NEW_VIRTUAL_THREAD = findNewVirtualThread();
+    private static final AtomicInteger FACTORY_SEQUENCE = new AtomicInteger();
+
+    private final String namePrefix;
+    private final boolean virtual;
+    /** Null to inherit the flag of the creating thread. */
+    private final Boolean daemon;
+    private final int priority;
+    private final long stackSize;
+    private final Thread.UncaughtExceptionHandler handler;
+    private final BitSet cpus;
+    private final CpuAffinity affinity;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicInteger alive = new AtomicInteger();
+    private final AtomicInteger peakAlive = new AtomicInteger();
+    private final AtomicLong terminated = new AtomicLong();
+    private final AtomicLong pinFailures = new AtomicLong();
+
+    /**
+     * Creates a factory of plain platform threads named "factory-N-thread-M", as built by an unconfigured
+     * {@link Builder}.
+     */
+    public MyThreadFactory() {
+        this(new Builder());
+    }
+
+    private MyThreadFactory(Builder builder) {
+        namePrefix = builder.namePrefix != null ? builder.namePrefix
+                : "factory-" + FACTORY_SEQUENCE.incrementAndGet() + "-thread-";
+        virtual = builder.virtual && NEW_VIRTUAL_THREAD != null;
+        daemon = builder.daemon;
+        priority = builder.priority;
+        stackSize = builder.stackSize;
+        handler = builder.handler;
+        cpus = builder.cpus == null ? null : (BitSet) builder.cpus.clone();
+        affinity = builder.affinity;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return true if {@link Builder#virtual()} creates virtual threads on this JVM
+     */
+    public static boolean isVirtualThreadSupported() {
+        return NEW_VIRTUAL_THREAD != null;
+    }
 
     @Override
     public Thread newThread(Runnable r) {
-        return new Thread(r);
+        if (r == null) { throw new NullPointerException(); }
+        final long n = created.incrementAndGet();
+        final Runnable task = () -> run(r);
+        final Thread t;
+        if (virtual) {
+            t = newVirtualThread(task);
+            t.setName(namePrefix + n);
+        } else {
+            t = new Thread(null, task, namePrefix + n, stackSize);
+            if (daemon != null && t.isDaemon() != daemon) { t.setDaemon(daemon); }
+            if (priority != 0 && t.getPriority() != priority) { t.setPriority(priority); }
+        }
+        if (handler != null) { t.setUncaughtExceptionHandler(handler); }
+        return t;
+    }
+
+    private void run(Runnable r) {
+        final int running = alive.incrementAndGet();
+        peakAlive.accumulateAndGet(running, Math::max);
+        try {
+            if (cpus != null && !virtual && !affinity.pinCurrentThread(cpus)) { pinFailures.incrementAndGet(); }
+            r.run();
+        } finally {
+            alive.decrementAndGet();
+            terminated.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the threads created so far, started or not
+     */
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    /**
+     * @return the threads that have started and not terminated yet
+     */
+    public int getAliveCount() {
+        return alive.get();
+    }
+
+    /**
+     * @return the largest number of threads alive at the same time
+     */
+    public int getPeakAliveCount() {
+        return peakAlive.get();
+    }
+
+    public long getTerminatedCount() {
+        return terminated.get();
+    }
+
+    /**
+     * @return the threads that should have been pinned to CPUs but were not, because the {@link CpuAffinity} does not
+     * support it or failed
+     */
+    public long getPinFailureCount() {
+        return pinFailures.get();
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    public String toString() {
+        return super.toString() + "[" + (virtual ? "virtual" : "platform") + ", created = " + created.get()
+                + ", alive = " + alive.get() + ", peak alive = " + peakAlive.get()
+                + ", terminated = " + terminated.get() + "]";
+    }
+
+    private static Thread newVirtualThread(Runnable task) {
+        try {
+            return (Thread) NEW_VIRTUAL_THREAD.invokeExact(task);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandle findNewVirtualThread() {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            final Class<?> builderType = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            final MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual",
+                    MethodType.methodType(builderType));
+            final MethodHandle unstarted = lookup.findVirtual(builderType, "unstarted",
+                    MethodType.methodType(Thread.class, Runnable.class));
+            // Without preview features enabled, JDK 19 and 20 throw UnsupportedOperationException here.
+            ofVirtual.invoke();
+            // unstarted(ofVirtual(), r)
+            return MethodHandles.foldArguments(unstarted, ofVirtual);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    /**
+     * Configures a {@link MyThreadFactory}. Unset daemon flag and priority are inherited from the thread that calls
+     * {@link MyThreadFactory#newThread(Runnable)}, as with a plain new Thread.
+     */
+    public static final class Builder {
+
+        private String namePrefix;
+        private boolean virtual;
+        private Boolean daemon;
+        private int priority;
+        private long stackSize;
+        private Thread.UncaughtExceptionHandler handler;
+        private BitSet cpus;
+        private CpuAffinity affinity = CpuAffinity.platformDefault();
+
+        private Builder() {
+        }
+
+        /**
+         * Names the threads namePrefix followed by 1, 2, 3...
+         */
+        public Builder name(String namePrefix) {
+            if (namePrefix == null) { throw new NullPointerException(); }
+            this.namePrefix = namePrefix;
+            return this;
+        }
+
+        /**
+         * Creates virtual threads if the JVM supports them, platform threads otherwise; daemon, priority, stack size
+         * and CPU set only apply to the latter.
+         */
+        public Builder virtual() {
+            virtual = true;
+            return this;
+        }
+
+        public Builder daemon(boolean daemon) {
+            this.daemon = daemon;
+            return this;
+        }
+
+        /**
+         * @param priority between {@link Thread#MIN_PRIORITY} and {@link Thread#MAX_PRIORITY}
+         */
+        public Builder priority(int priority) {
+            if (priority < Thread.MIN_PRIORITY || priority > Thread.MAX_PRIORITY) {
+                throw new IllegalArgumentException("Priority must be in [1, 10]!");
+            }
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * @param stackSize in bytes, a hint the JVM may ignore; 0 for the JVM's default
+         */
+        public Builder stackSize(long stackSize) {
+            if (stackSize < 0) { throw new IllegalArgumentException("Stack size must not be negative!"); }
+            this.stackSize = stackSize;
+            return this;
+        }
+
+        public Builder uncaughtExceptionHandler(Thread.UncaughtExceptionHandler handler) {
+            if (handler == null) { throw new NullPointerException(); }
+            this.handler = handler;
+            return this;
+        }
+
+        /**
+         * Pins every thread to the given CPUs when it starts, with {@link CpuAffinity#platformDefault()} unless
+         * {@link #affinity(CpuAffinity)} sets another strategy. Where pinning is not supported the thread runs
+         * unpinned, counted by {@link MyThreadFactory#getPinFailureCount()}.
+         */
+        public Builder cpus(int... cpus) {
+            if (cpus.length == 0) { throw new IllegalArgumentException("CPU set must not be empty!"); }
+            BitSet set = new BitSet();
+            for (int cpu : cpus) {
+                if (cpu < 0) { throw new IllegalArgumentException("CPU index must not be negative!"); }
+                set.set(cpu);
+            }
+            this.cpus = set;
+            return this;
+        }
+
+        public Builder affinity(CpuAffinity affinity) {
+            if (affinity == null) { throw new NullPointerException(); }
+            this.affinity = affinity;
+            return this;
+        }
+
+        public MyThreadFactory build() {
+            return new MyThreadFactory(this);
+        }
     }
 }
@@ -0,0 +1,97 @@
+package com.chuan.concurrent.multithreads;
+
+/**
+ * Lets parties 0, 1, ..., N-1 take turns in a fixed cycle: party p may run its turn once party p-1 handed over, and
+ * party 0 follows party N-1. This is the ping-pong of {@link ThreadsRunInLoop} for any number of threads, with one
+ * volatile turn counter instead of a monitor per thread.
+ *
+ * How a party waits for its turn is up to the {@link WaitStrategy}, from busy spinning, which hands over fastest but
+ * needs a CPU per party, to blocking on a lock, which costs a lock round-trip per hand-over but no CPU while waiting.
+ *
+ * <pre>
+ * sequencer.awaitTurn(party);
+ * try {
+ *     ... // the stage of this party
+ * } finally {
+ *     sequencer.advance(party);
+ * }
+ * </pre>
+ *
+ * @author hechuan
+ */
+public class RoundRobinSequencer {
+
+    private final int parties;
+    private final WaitStrategy strategy;
+    /** Number of completed turns, the current turn belongs to party turn % parties. Written by that party only. */
+    private volatile long turn;
+
+    /**
+     * @param strategy a fresh strategy, it is bound to this sequencer
+     */
+    public RoundRobinSequencer(int parties, WaitStrategy strategy) {
+        if (parties <= 0) { throw new IllegalArgumentException("Parties must be large than 0!"); }
+        if (strategy == null) { throw new NullPointerException(); }
+        this.parties = parties;
+        this.strategy = strategy;
+        strategy.init(parties);
+    }
+
+    /**
+     * Waits until it is the given party's turn. Only that party may call this, and only one thread per party.
+     */
+    public void awaitTurn(int party) throws InterruptedException {
+        checkParty(party);
+        final long current = turn;
+        // No party can be skipped, so the next turn of the party is the first one from now on that is due to it.
+        final long target = current + Math.floorMod(party - current, (long) parties);
+        if (target != current) { strategy.await(this, party, target); }
+    }
+
+    /**
+     * Ends the given party's turn and hands over to the next party.
+     *
+     * @throws IllegalStateException if it is not the party's turn
+     */
+    public void advance(int party) {
+        checkParty(party);
+        final long current = turn;
+        if (current % parties != party) { throw new IllegalStateException("Not the turn of party " + party + "!"); }
+        turn = current + 1;
+        strategy.signal(party + 1 == parties ? 0 : party + 1);
+    }
+
+    /**
+     * Waits for the party's turn, runs the action and hands over, even if the action throws.
+     */
+    public void run(int party, Runnable action) throws InterruptedException {
+        awaitTurn(party);
+        try {
+            action.run();
+        } finally {
+            advance(party);
+        }
+    }
+
+    /**
+     * @return the number of turns completed so far
+     */
+    public long turn() {
+        return turn;
+    }
+
+    /**
+     * @return the party whose turn it is
+     */
+    public int currentParty() {
+        return (int) (turn % parties);
+    }
+
+    public int parties() {
+        return parties;
+    }
+
+    private void checkParty(int party) {
+        if (party < 0 || party >= parties) { throw new IllegalArgumentException("Party must be in [0, parties)!"); }
+    }
+}
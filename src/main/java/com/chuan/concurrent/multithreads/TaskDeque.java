@@ -0,0 +1,114 @@
+package com.chuan.concurrent.multithreads;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The lock-free task deque of a {@link WorkStealingExecutor} worker (Chase and Lev, "Dynamic Circular Work-Stealing
+ * Deque"). The owning worker pushes and pops at the bottom, LIFO, and only needs a CAS when it races a thief for the
+ * last task; any other thread steals from the top, FIFO, with one CAS on top.
+ *
+ * The array doubles when it is full and only the owner writes it, so a thief still reading the old array sees the same
+ * tasks there. Thieves do not clear the slot they stole from, a stolen task stays referenced until the owner reuses
+ * the slot one lap later.
+ *
+ * @author hechuan
+ */
+final class TaskDeque {
+
+    private static final int INITIAL_CAPACITY = 1 << 8;
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Runnable[].class);
+    private static final VarHandle TOP;
+
+    static {
+        try {
+            TOP = MethodHandles.lookup().findVarHandle(TaskDeque.class, "top", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private volatile Runnable[] array = new Runnable[INITIAL_CAPACITY];
+    /** Index of the next task to steal, advanced by CAS. */
+    private volatile long top;
+    /** Index of the next free slot, written by the owner only. */
+    private volatile long bottom;
+
+    /**
+     * Owner only.
+     *
+     * @throws RejectedExecutionException if the deque already holds its maximum number of tasks
+     */
+    void push(Runnable task) {
+        final long b = bottom;
+        Runnable[] a = array;
+        if (b - top >= a.length - 1) { a = grow(a, b); }
+        SLOT.setRelease(a, (int) b & (a.length - 1), task);
+        bottom = b + 1;
+    }
+
+    /**
+     * Owner only.
+     *
+     * @return the most recently pushed task, or null if the deque is empty
+     */
+    Runnable pop() {
+        final long b = bottom - 1;
+        final Runnable[] a = array;
+        // The volatile store of bottom before the volatile load of top keeps a thief from taking the same task.
+        bottom = b;
+        final long t = top;
+        if (t > b) {
+            bottom = b + 1;
+            return null;
+        }
+        final int i = (int) b & (a.length - 1);
+        Runnable task = a[i];
+        if (t == b) {
+            // The last task: whoever moves top past it owns it.
+            if (!TOP.compareAndSet(this, t, t + 1)) { task = null; }
+            bottom = b + 1;
+        }
+        if (task != null) { a[i] = null; }
+        return task;
+    }
+
+    /**
+     * Any thread.
+     *
+     * @return the least recently pushed task, or null if the deque is empty or another thread took that task first
+     */
+    Runnable steal() {
+        final long t = top;
+        final long b = bottom;
+        if (t >= b) { return null; }
+        final Runnable[] a = array;
+        final Runnable task = (Runnable) SLOT.getAcquire(a, (int) t & (a.length - 1));
+        return task != null && TOP.compareAndSet(this, t, t + 1) ? task : null;
+    }
+
+    /**
+     * @return the number of tasks, which may already be stale when other threads are active
+     */
+    int size() {
+        final long size = bottom - top;
+        return size <= 0 ? 0 : (int) size;
+    }
+
+    boolean isEmpty() {
+        return bottom <= top;
+    }
+
+    private Runnable[] grow(Runnable[] a, long b) {
+        if (a.length >= MAX_CAPACITY) { throw new RejectedExecutionException("Worker queue capacity exceeded!"); }
+        final Runnable[] grown = new Runnable[a.length << 1];
+        for (long i = top; i < b; i++) {
+            grown[(int) i & (grown.length - 1)] = a[(int) i & (a.length - 1)];
+        }
+        array = grown;
+        return grown;
+    }
+}
@@ -0,0 +1,476 @@
+package com.chuan.concurrent.multithreads;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A dependency graph of stages, the general form of {@link ThreadsRunInOrder}: every stage names the stages it depends
+ * on, and {@link #execute(Executor)} hands a stage to the executor the moment its last predecessor completes. No
+ * thread waits for a predecessor, the thread finishing a stage dispatches its successors, so independent branches run
+ * in parallel on as many threads as the executor has and a long chain costs no thread while it waits.
+ *
+ * The graph is immutable and can be executed any number of times, concurrently too. Every {@link Execution} records
+ * when each stage became ready, started and ended, and derives the critical path from that.
+ *
+ * If a stage throws, the stages depending on it directly or transitively are skipped, the other branches still run,
+ * and the execution completes exceptionally with the first failure.
+ *
+ * <pre>
+ * TaskGraph graph = TaskGraph.builder()
+ *         .stage("plan", this::plan)
+ *         .stage("develop", this::develop, "plan")
+ *         .stage("document", this::document, "plan")
+ *         .stage("test", this::test, "develop", "document")
+ *         .build();
+ * graph.execute(executor).await();
+ * </pre>
+ *
+ * @author hechuan
+ */
+public final class TaskGraph {
+
+    public enum Status { SUCCEEDED, FAILED, SKIPPED }
+
+    private final String[] names;
+    private final Runnable[] actions;
+    private final int[][] predecessors;
+    private final int[][] successors;
+    private final int[] roots;
+
+    private TaskGraph(String[] names, Runnable[] actions, int[][] predecessors) {
+        this.names = names;
+        this.actions = actions;
+        this.predecessors = predecessors;
+        final int n = names.length;
+        final int[] outDegree = new int[n];
+        int rootCount = 0;
+        for (int[] preds : predecessors) {
+            if (preds.length == 0) { rootCount++; }
+            for (int p : preds) {
+                outDegree[p]++;
+            }
+        }
+        successors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            successors[i] = new int[outDegree[i]];
+        }
+        roots = new int[rootCount];
+        final int[] filled = new int[n];
+        for (int i = 0, r = 0; i < n; i++) {
+            if (predecessors[i].length == 0) { roots[r++] = i; }
+            for (int p : predecessors[i]) {
+                successors[p][filled[p]++] = i;
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts the stages without predecessors on the executor and returns at once.
+     */
+    public Execution execute(Executor executor) {
+        if (executor == null) { throw new NullPointerException(); }
+        final Execution execution = new Execution(executor);
+        for (int root : roots) {
+            execution.dispatch(root);
+        }
+        return execution;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the stage names in declaration order
+     */
+    public List<String> stageNames() {
+        return Collections.unmodifiableList(Arrays.asList(names));
+    }
+
+    /**
+     * One run of the graph.
+     */
+    public final class Execution {
+
+        private final Executor executor;
+        private final long startNanos = System.nanoTime();
+        /** Predecessors of each stage that have not completed yet. */
+        private final AtomicIntegerArray pending;
+        /** Set for a stage before its pending count drops to 0 if a predecessor failed or was skipped. */
+        private final AtomicIntegerArray poisoned;
+        /** Written by the thread that completes the stage, read once done is released. */
+        private final long[] readyAt;
+        private final long[] startedAt;
+        private final long[] endedAt;
+        private final Status[] statuses;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final CountDownLatch done;
+        /** The stages that became ready on a thread while it is dispatching, null while it is not; see dispatch. */
+        private final ThreadLocal<ArrayDeque<Integer>> deferred = new ThreadLocal<>();
+
+        private Execution(Executor executor) {
+            this.executor = executor;
+            final int n = names.length;
+            pending = new AtomicIntegerArray(n);
+            for (int i = 0; i < n; i++) {
+                pending.set(i, predecessors[i].length);
+            }
+            poisoned = new AtomicIntegerArray(n);
+            readyAt = new long[n];
+            startedAt = new long[n];
+            endedAt = new long[n];
+            statuses = new Status[n];
+            done = new CountDownLatch(n);
+        }
+
+        /**
+         * Hands a ready stage to the executor. An executor may run the stage on the calling thread, and the stage then
+         * completes and dispatches its successors before execute returns, so a long chain would nest one
+         * dispatch/run/complete cycle per stage on the stack. Instead the first dispatch on a thread owns a worklist,
+         * and stages made ready on that thread while it dispatches are queued and handed over in a loop.
+         */
+        private void dispatch(int stage) {
+            readyAt[stage] = System.nanoTime();
+            final ArrayDeque<Integer> queue = deferred.get();
+            if (queue != null) {
+                queue.add(stage);
+                return;
+            }
+            final ArrayDeque<Integer> worklist = new ArrayDeque<>();
+            deferred.set(worklist);
+            try {
+                submit(stage);
+                Integer next;
+                while ((next = worklist.poll()) != null) {
+                    submit(next);
+                }
+            } finally {
+                deferred.remove();
+            }
+        }
+
+        private void submit(int stage) {
+            try {
+                executor.execute(() -> run(stage));
+            } catch (RuntimeException e) {
+                // Typically a RejectedExecutionException.
+                startedAt[stage] = endedAt[stage] = readyAt[stage];
+                complete(stage, e);
+            }
+        }
+
+        private void run(int stage) {
+            startedAt[stage] = System.nanoTime();
+            Throwable thrown = null;
+            try {
+                actions[stage].run();
+            } catch (Throwable ex) {
+                thrown = ex;
+            }
+            endedAt[stage] = System.nanoTime();
+            complete(stage, thrown);
+        }
+
+        /**
+         * Releases the successors of a stage that ran, dispatching the ones that became ready and skipping the ones
+         * below a failure, iteratively so that a long skipped chain does not recurse either.
+         */
+        private void complete(int stage, Throwable thrown) {
+            if (thrown != null) { failure.compareAndSet(null, thrown); }
+            statuses[stage] = thrown == null ? Status.SUCCEEDED : Status.FAILED;
+            ArrayDeque<Integer> skipped = null;
+            int current = stage;
+            boolean poison = thrown != null;
+            for (;;) {
+                for (int s : successors[current]) {
+                    if (poison) { poisoned.set(s, 1); }
+                    if (pending.decrementAndGet(s) != 0) { continue; }
+                    if (poisoned.get(s) == 0) {
+                        dispatch(s);
+                    } else {
+                        if (skipped == null) { skipped = new ArrayDeque<>(); }
+                        skipped.add(s);
+                    }
+                }
+                done.countDown();
+                if (skipped == null || skipped.isEmpty()) { return; }
+                current = skipped.poll();
+                final long now = System.nanoTime();
+                readyAt[current] = startedAt[current] = endedAt[current] = now;
+                statuses[current] = Status.SKIPPED;
+                poison = true;
+            }
+        }
+
+        /**
+         * Waits until every stage has run or been skipped.
+         *
+         * @throws ExecutionException with the first exception a stage threw
+         */
+        public void await() throws InterruptedException, ExecutionException {
+            done.await();
+            checkFailure();
+        }
+
+        /**
+         * @return false if stages were still pending when the timeout elapsed
+         * @throws ExecutionException with the first exception a stage threw
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+            if (!done.await(timeout, unit)) { return false; }
+            checkFailure();
+            return true;
+        }
+
+        private void checkFailure() throws ExecutionException {
+            final Throwable t = failure.get();
+            if (t != null) { throw new ExecutionException(t); }
+        }
+
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * @return the time from {@link #execute(Executor)} until the last stage ended
+         */
+        public long getElapsedNanos() {
+            checkDone();
+            long last = startNanos;
+            for (long end : endedAt) {
+                last = Math.max(last, end);
+            }
+            return last - startNanos;
+        }
+
+        /**
+         * @return one report per stage, in declaration order
+         */
+        public List<StageReport> reports() {
+            checkDone();
+            final List<StageReport> reports = new ArrayList<>(names.length);
+            for (int i = 0; i < names.length; i++) {
+                reports.add(report(i));
+            }
+            return reports;
+        }
+
+        public StageReport report(String stage) {
+            checkDone();
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(stage)) { return report(i); }
+            }
+            throw new IllegalArgumentException("Unknown stage " + stage + "!");
+        }
+
+        /**
+         * The chain of stages that determined how long the execution took: starting from the stage that ended last,
+         * each step goes back to the predecessor that completed last and so made the stage ready. Shortening any
+         * other stage would not have ended the execution sooner.
+         *
+         * @return the stage names from a root to the stage that ended last
+         */
+        public List<String> criticalPath() {
+            checkDone();
+            if (names.length == 0) { return Collections.emptyList(); }
+            int stage = 0;
+            for (int i = 1; i < names.length; i++) {
+                if (endedAt[i] > endedAt[stage]) { stage = i; }
+            }
+            final List<String> path = new ArrayList<>();
+            for (;;) {
+                path.add(names[stage]);
+                if (predecessors[stage].length == 0) { break; }
+                int last = predecessors[stage][0];
+                for (int p : predecessors[stage]) {
+                    if (endedAt[p] > endedAt[last]) { last = p; }
+                }
+                stage = last;
+            }
+            Collections.reverse(path);
+            return path;
+        }
+
+        private StageReport report(int i) {
+            return new StageReport(names[i], statuses[i], readyAt[i] - startNanos, startedAt[i] - readyAt[i],
+                    endedAt[i] - startedAt[i]);
+        }
+
+        private void checkDone() {
+            if (!isDone()) { throw new IllegalStateException("Execution is still running!"); }
+        }
+
+        @Override
+        public String toString() {
+            if (!isDone()) { return super.toString() + "[Running, pending stages = " + done.getCount() + "]"; }
+            final StringBuilder sb = new StringBuilder(super.toString())
+                    .append("[elapsed = ").append(TimeUnit.NANOSECONDS.toMicros(getElapsedNanos())).append("us")
+                    .append(", critical path = ").append(criticalPath());
+            for (int i = 0; i < names.length; i++) {
+                sb.append(", ").append(report(i));
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+    /**
+     * Timings of one stage in one execution, in nanoseconds. A skipped stage has zero wait and run time.
+     */
+    public static final class StageReport {
+
+        private final String name;
+        private final Status status;
+        private final long readyOffsetNanos;
+        private final long waitNanos;
+        private final long runNanos;
+
+        StageReport(String name, Status status, long readyOffsetNanos, long waitNanos, long runNanos) {
+            this.name = name;
+            this.status = status;
+            this.readyOffsetNanos = readyOffsetNanos;
+            this.waitNanos = waitNanos;
+            this.runNanos = runNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the time from the start of the execution until the last predecessor completed
+         */
+        public long getReadyOffsetNanos() {
+            return readyOffsetNanos;
+        }
+
+        /**
+         * @return the time the stage waited in the executor's queue for a thread
+         */
+        public long getWaitNanos() {
+            return waitNanos;
+        }
+
+        public long getRunNanos() {
+            return runNanos;
+        }
+
+        /**
+         * @return the time from ready until ended, the latency the stage added to its branch
+         */
+        public long getLatencyNanos() {
+            return waitNanos + runNanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + status + " ready at " + TimeUnit.NANOSECONDS.toMicros(readyOffsetNanos)
+                    + "us, waited " + TimeUnit.NANOSECONDS.toMicros(waitNanos)
+                    + "us, ran " + TimeUnit.NANOSECONDS.toMicros(runNanos) + "us";
+        }
+    }
+
+    /**
+     * Collects the stages of a {@link TaskGraph}. Stages may be declared in any order, names and cycles are checked
+     * by {@link #build()}.
+     */
+    public static final class Builder {
+
+        private final List<String> names = new ArrayList<>();
+        private final List<Runnable> actions = new ArrayList<>();
+        private final List<String[]> predecessors = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * @param predecessors names of the stages that must complete before this one starts
+         */
+        public Builder stage(String name, Runnable action, String... predecessors) {
+            if (name == null || action == null) { throw new NullPointerException(); }
+            if (index.putIfAbsent(name, names.size()) != null) {
+                throw new IllegalArgumentException("Duplicate stage " + name + "!");
+            }
+            names.add(name);
+            actions.add(action);
+            this.predecessors.add(predecessors.clone());
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if a predecessor is not a stage, or the stages depend on each other in a
+         * cycle
+         */
+        public TaskGraph build() {
+            final int n = names.size();
+            final int[][] preds = new int[n][];
+            for (int i = 0; i < n; i++) {
+                final String[] declared = predecessors.get(i);
+                preds[i] = new int[declared.length];
+                for (int k = 0; k < declared.length; k++) {
+                    final Integer p = index.get(declared[k]);
+                    if (p == null) {
+                        throw new IllegalArgumentException("Stage " + names.get(i) + " depends on unknown stage "
+                                + declared[k] + "!");
+                    }
+                    if (p == i) { throw new IllegalArgumentException("Stage " + names.get(i) + " depends on itself!"); }
+                    preds[i][k] = p;
+                }
+                preds[i] = Arrays.stream(preds[i]).distinct().toArray();
+            }
+            final TaskGraph graph = new TaskGraph(names.toArray(new String[0]), actions.toArray(new Runnable[0]),
+                    preds);
+            checkAcyclic(graph);
+            return graph;
+        }
+
+        /**
+         * Kahn's algorithm: a cycle leaves stages whose predecessors never all complete.
+         */
+        private static void checkAcyclic(TaskGraph graph) {
+            final int n = graph.names.length;
+            final int[] pending = new int[n];
+            for (int i = 0; i < n; i++) {
+                pending[i] = graph.predecessors[i].length;
+            }
+            final ArrayDeque<Integer> ready = new ArrayDeque<>();
+            for (int root : graph.roots) {
+                ready.add(root);
+            }
+            int completed = 0;
+            while (!ready.isEmpty()) {
+                final int stage = ready.poll();
+                completed++;
+                for (int s : graph.successors[stage]) {
+                    if (--pending[s] == 0) { ready.add(s); }
+                }
+            }
+            if (completed != n) {
+                final List<String> cyclic = new ArrayList<>();
+                for (int i = 0; i < n; i++) {
+                    if (pending[i] > 0) { cyclic.add(graph.names[i]); }
+                }
+                throw new IllegalArgumentException("Stages depend on each other in a cycle: " + cyclic + "!");
+            }
+        }
+    }
+}
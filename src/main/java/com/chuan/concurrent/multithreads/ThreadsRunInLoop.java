@@ -1,5 +1,7 @@
 package com.chuan.concurrent.multithreads;
 
+import com.chuan.concurrent.blockingqueue.HandOffChannel;
+
 import java.util.concurrent.ThreadFactory;
 
 /**
@@ -17,6 +19,7 @@ public class ThreadsRunInLoop {
         ThreadFactory factory = new MyThreadFactory();
 
         threadsRunInOrderLoopWithWaitNotify(10, factory);
+        threadsRunInOrderLoopWithSequencer(10, 3, factory, WaitStrategy.spinThenPark(100));
     }
 
     public static void threadsRunInOrderLoopWithWaitNotify(int times, ThreadFactory factory) {
@@ -127,4 +130,54 @@ public class ThreadsRunInLoop {
         t3.start();
     }
 
+    /**
+     * The same loop for any number of threads, each printing its number, taking turns through a
+     * {@link RoundRobinSequencer}.
+     */
+    public static void threadsRunInOrderLoopWithSequencer(int times, int threads, ThreadFactory factory,
+                                                          WaitStrategy strategy) {
+        final RoundRobinSequencer sequencer = new RoundRobinSequencer(threads, strategy);
+        for (int i = 0; i < threads; i++) {
+            final int party = i;
+            factory.newThread(() -> {
+                try {
+                    for (int time = times; time != 0; time--) {
+                        sequencer.run(party, () -> System.out.println(party + 1));
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * The same loop with the turn passed on as a value instead of through shared flags: every thread takes the turn
+     * from its own {@link HandOffChannel}, prints its number and hands the turn to the channel of the next thread. A
+     * hand-off needs a thread on either side, so it takes at least 2 threads.
+     */
+    public static void threadsRunInOrderLoopWithHandOff(int times, int threads, ThreadFactory factory) {
+        if (threads < 2) { throw new IllegalArgumentException("Threads must be at least 2!"); }
+        @SuppressWarnings("unchecked")
+        final HandOffChannel<Integer>[] channels = (HandOffChannel<Integer>[]) new HandOffChannel<?>[threads];
+        for (int i = 0; i < threads; i++) {
+            channels[i] = new HandOffChannel<>();
+        }
+        for (int i = 0; i < threads; i++) {
+            final int party = i;
+            factory.newThread(() -> {
+                try {
+                    for (int time = times; time != 0; time--) {
+                        // The first thread starts the first round without waiting.
+                        final int turn = party == 0 && time == times ? 0 : channels[party].take();
+                        System.out.println(party + 1);
+                        // Nobody takes the turn after the last round of the last thread.
+                        if (party != threads - 1 || time != 1) { channels[(party + 1) % threads].put(turn + 1); }
+                    }
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }).start();
+        }
+    }
 }
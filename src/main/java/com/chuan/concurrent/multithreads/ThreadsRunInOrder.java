@@ -25,6 +25,8 @@ import java.util.concurrent.locks.ReentrantLock;
  *
  * 规划需求，开发需求新功能，测试新功能是一个有顺序的，我们把thread1看做产品经理，thread2看做开发人员，thread3看做测试人员。
  *
+ * 这8种方式可复用、可重置、可测量的版本见{@link com.chuan.concurrent.multithreads.order.StageOrdering}的实现。
+ *
  * @author hechuan
  */
 public class ThreadsRunInOrder {
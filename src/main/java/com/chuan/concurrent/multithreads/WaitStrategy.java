@@ -0,0 +1,192 @@
+package com.chuan.concurrent.multithreads;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * How a party of a {@link RoundRobinSequencer} waits for its turn, and how the previous party wakes it. An instance
+ * may keep per-party state, so it belongs to the one sequencer it was passed to.
+ *
+ * @author hechuan
+ */
+public interface WaitStrategy {
+
+    /**
+     * Called once by the constructor of the sequencer.
+     */
+    void init(int parties);
+
+    /**
+     * Waits until {@link RoundRobinSequencer#turn()} reaches the given turn, which belongs to the given party.
+     */
+    void await(RoundRobinSequencer sequencer, int party, long turn) throws InterruptedException;
+
+    /**
+     * Called right after the turn of the given party began, to wake it if it waits.
+     */
+    void signal(int party);
+
+    /**
+     * Spins on the turn counter: the lowest hand-over latency, at the price of a busy CPU per waiting party. With more
+     * parties than CPUs the waiting parties steal the CPU from the one whose turn it is.
+     */
+    static WaitStrategy busySpin() {
+        return new BusySpinWaitStrategy();
+    }
+
+    /**
+     * Spins the given number of rounds, then yields the CPU between checks of the turn counter.
+     */
+    static WaitStrategy yielding(int spins) {
+        return new YieldingWaitStrategy(spins);
+    }
+
+    /**
+     * Spins the given number of rounds, then parks until the previous party unparks it. A hand-over costs an unpark
+     * only if the next party already parked.
+     */
+    static WaitStrategy spinThenPark(int spins) {
+        return new SpinThenParkWaitStrategy(spins);
+    }
+
+    /**
+     * Waits on a condition of a lock shared by all parties, every hand-over takes the lock to signal.
+     */
+    static WaitStrategy blocking() {
+        return new BlockingWaitStrategy();
+    }
+}
+
+final class BusySpinWaitStrategy implements WaitStrategy {
+
+    @Override
+    public void init(int parties) {
+    }
+
+    @Override
+    public void await(RoundRobinSequencer sequencer, int party, long turn) throws InterruptedException {
+        while (sequencer.turn() != turn) {
+            if (Thread.interrupted()) { throw new InterruptedException(); }
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public void signal(int party) {
+    }
+}
+
+final class YieldingWaitStrategy implements WaitStrategy {
+
+    private final int spins;
+
+    YieldingWaitStrategy(int spins) {
+        if (spins < 0) { throw new IllegalArgumentException("Spins must not be negative!"); }
+        this.spins = spins;
+    }
+
+    @Override
+    public void init(int parties) {
+    }
+
+    @Override
+    public void await(RoundRobinSequencer sequencer, int party, long turn) throws InterruptedException {
+        for (int round = 0; sequencer.turn() != turn; round++) {
+            if (Thread.interrupted()) { throw new InterruptedException(); }
+            if (round < spins) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public void signal(int party) {
+    }
+}
+
+final class SpinThenParkWaitStrategy implements WaitStrategy {
+
+    private final int spins;
+    /** The parked thread of each party, or null. */
+    private AtomicReferenceArray<Thread> waiters;
+
+    SpinThenParkWaitStrategy(int spins) {
+        if (spins < 0) { throw new IllegalArgumentException("Spins must not be negative!"); }
+        this.spins = spins;
+    }
+
+    @Override
+    public void init(int parties) {
+        if (waiters != null) { throw new IllegalStateException("Strategy is already bound to a sequencer!"); }
+        waiters = new AtomicReferenceArray<>(parties);
+    }
+
+    @Override
+    public void await(RoundRobinSequencer sequencer, int party, long turn) throws InterruptedException {
+        for (int round = 0; round < spins; round++) {
+            if (sequencer.turn() == turn) { return; }
+            Thread.onSpinWait();
+        }
+        // Publish the waiter before the last check of the turn, and the sequencer publishes the turn before it reads
+        // the waiter, so either we see the turn or the signal sees us.
+        waiters.set(party, Thread.currentThread());
+        try {
+            while (sequencer.turn() != turn) {
+                if (Thread.interrupted()) { throw new InterruptedException(); }
+                LockSupport.park(this);
+            }
+        } finally {
+            waiters.set(party, null);
+        }
+    }
+
+    @Override
+    public void signal(int party) {
+        final Thread waiter = waiters.get(party);
+        if (waiter != null) { LockSupport.unpark(waiter); }
+    }
+}
+
+final class BlockingWaitStrategy implements WaitStrategy {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** One condition per party, so that a hand-over wakes only the next party. */
+    private Condition[] turns;
+
+    @Override
+    public void init(int parties) {
+        if (turns != null) { throw new IllegalStateException("Strategy is already bound to a sequencer!"); }
+        turns = new Condition[parties];
+        for (int i = 0; i < parties; i++) {
+            turns[i] = lock.newCondition();
+        }
+    }
+
+    @Override
+    public void await(RoundRobinSequencer sequencer, int party, long turn) throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (sequencer.turn() != turn) {
+                turns[party].await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signal(int party) {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            turns[party].signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
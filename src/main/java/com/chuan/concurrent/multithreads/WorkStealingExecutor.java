@@ -0,0 +1,350 @@
+package com.chuan.concurrent.multithreads;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed-size executor in which every worker owns a lock-free {@link TaskDeque}. Tasks submitted from inside a task
+ * go to the submitting worker's own deque, which it pops LIFO, so a fan-out stays on the worker whose caches hold its
+ * data; idle workers steal the oldest tasks FIFO from the other deques. Tasks submitted from outside the pool are
+ * spread over per-worker inboxes at random. No queue is shared by all submitters and workers, unlike the single work
+ * queue of a {@link java.util.concurrent.ThreadPoolExecutor}.
+ *
+ * A worker that finds no task anywhere rescans a few times on a multi-core machine and then parks. Every submission
+ * that sees a parked worker unparks one.
+ *
+ * An exception thrown by a task run via {@link #execute(Runnable)} goes to the worker thread's uncaught exception
+ * handler, and the worker carries on with the next task.
+ *
+ * @author hechuan
+ */
+public class WorkStealingExecutor extends AbstractExecutorService {
+
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+
+    /**
+     * Rescans before an idle worker parks. On a single CPU no other thread can submit while we rescan, so none there.
+     */
+    private static final int IDLE_SCANS = Runtime.getRuntime().availableProcessors() > 1 ? 64 : 0;
+
+    private static final ThreadLocal<Worker> CURRENT = new ThreadLocal<>();
+
+    private static final VarHandle PARKED;
+
+    static {
+        try {
+            PARKED = MethodHandles.lookup().findVarHandle(Worker.class, "parked", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Worker[] workers;
+    /** Number of workers that announced they are about to park or are parked. */
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private final CountDownLatch terminated;
+    private volatile int state = RUNNING;
+
+    /**
+     * Creates the workers with a {@link MyThreadFactory}.
+     */
+    public WorkStealingExecutor(int parallelism) {
+        this(parallelism, new MyThreadFactory());
+    }
+
+    /**
+     * Creates and starts parallelism worker threads with the given factory.
+     */
+    public WorkStealingExecutor(int parallelism, ThreadFactory threadFactory) {
+        if (parallelism <= 0) { throw new IllegalArgumentException("Parallelism must be large than 0!"); }
+        if (threadFactory == null) { throw new NullPointerException(); }
+        workers = new Worker[parallelism];
+        terminated = new CountDownLatch(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            Worker w = new Worker();
+            w.thread = threadFactory.newThread(w);
+            if (w.thread == null) { throw new IllegalStateException("Thread factory returned null!"); }
+            workers[i] = w;
+        }
+        for (Worker w : workers) {
+            w.thread.start();
+        }
+    }
+
+    /**
+     * @throws RejectedExecutionException if the executor has been shut down
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) { throw new NullPointerException(); }
+        if (state != RUNNING) { throw new RejectedExecutionException("Executor has been shut down!"); }
+        final Worker current = CURRENT.get();
+        if (current != null && current.owner() == this) {
+            current.deque.push(task);
+            // shutdownNow may have drained the deques since the check above, and this worker exits on STOP. The task
+            // is still on top unless shutdownNow stole it, which then returns it.
+            if (state == STOP && current.deque.pop() == task) {
+                throw new RejectedExecutionException("Executor has been shut down!");
+            }
+        } else {
+            final Queue<Runnable> inbox = workers[ThreadLocalRandom.current().nextInt(workers.length)].inbox;
+            inbox.offer(task);
+            // The workers may have seen no work and exited since the check above.
+            if (state != RUNNING && inbox.remove(task)) {
+                throw new RejectedExecutionException("Executor has been shut down!");
+            }
+        }
+        signalWork();
+    }
+
+    /**
+     * Unparks one parked worker, if there is any.
+     */
+    private void signalWork() {
+        if (idleCount.get() == 0) { return; }
+        final int n = workers.length;
+        final int start = ThreadLocalRandom.current().nextInt(n);
+        for (int k = 0; k < n; k++) {
+            Worker w = workers[(start + k) % n];
+            if (w.parked && PARKED.compareAndSet(w, true, false)) {
+                LockSupport.unpark(w.thread);
+                return;
+            }
+        }
+    }
+
+    private void runWorker(Worker w) {
+        CURRENT.set(w);
+        try {
+            int idleScans = 0;
+            while (state != STOP) {
+                Runnable task = findTask(w);
+                if (task != null) {
+                    idleScans = 0;
+                    runTask(w, task);
+                } else if (state != RUNNING && !hasTasks()) {
+                    return;
+                } else if (idleScans++ < IDLE_SCANS) {
+                    Thread.onSpinWait();
+                } else {
+                    idleScans = 0;
+                    awaitTask(w);
+                }
+            }
+        } finally {
+            CURRENT.remove();
+            terminated.countDown();
+        }
+    }
+
+    /**
+     * Own deque first, newest task first, then own inbox, then the other workers' deques and inboxes, oldest first.
+     */
+    private Runnable findTask(Worker w) {
+        Runnable task = w.deque.pop();
+        if (task != null) { return task; }
+        if ((task = w.inbox.poll()) != null) { return task; }
+        final int n = workers.length;
+        final int start = ThreadLocalRandom.current().nextInt(n);
+        for (int k = 0; k < n; k++) {
+            Worker victim = workers[(start + k) % n];
+            if (victim == w) { continue; }
+            if ((task = victim.deque.steal()) != null || (task = victim.inbox.poll()) != null) {
+                w.steals++;
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasTasks() {
+        for (Worker w : workers) {
+            if (!w.deque.isEmpty() || !w.inbox.isEmpty()) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * Parks until a submitter or shutdown unparks this worker. The worker announces itself as idle before it checks
+     * for tasks one last time, and a submitter checks for idle workers after it has queued its task, so one of the
+     * two always sees the other.
+     */
+    private void awaitTask(Worker w) {
+        w.parked = true;
+        idleCount.incrementAndGet();
+        try {
+            while (w.parked) {
+                if (state != RUNNING || hasTasks()) { return; }
+                // A stale interrupt, e.g. from a task, would make park return at once.
+                Thread.interrupted();
+                LockSupport.park(this);
+            }
+        } finally {
+            w.parked = false;
+            idleCount.decrementAndGet();
+        }
+    }
+
+    private void runTask(Worker w, Runnable task) {
+        // Like ThreadPoolExecutor, do not let an interrupt meant for an earlier task leak into this one.
+        if (state != STOP) { Thread.interrupted(); }
+        try {
+            task.run();
+        } catch (Throwable ex) {
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+        }
+        w.completed++;
+    }
+
+    /**
+     * Previously submitted tasks still run, new ones are rejected.
+     */
+    @Override
+    public synchronized void shutdown() {
+        if (state == RUNNING) { state = SHUTDOWN; }
+        wakeAll();
+    }
+
+    /**
+     * Interrupts the workers and returns the tasks that did not start, tasks a worker is just taking may still run.
+     */
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        state = STOP;
+        for (Worker w : workers) {
+            w.thread.interrupt();
+        }
+        wakeAll();
+        List<Runnable> tasks = new ArrayList<>();
+        for (Worker w : workers) {
+            Runnable task;
+            while (!w.deque.isEmpty()) {
+                if ((task = w.deque.steal()) != null) { tasks.add(task); }
+            }
+            while ((task = w.inbox.poll()) != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks;
+    }
+
+    private void wakeAll() {
+        for (Worker w : workers) {
+            w.parked = false;
+            LockSupport.unpark(w.thread);
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    public int getParallelism() {
+        return workers.length;
+    }
+
+    /**
+     * @return the number of tasks waiting in the deque and inbox of the worker, an estimate while it is running; the
+     * inbox is traversed to count it
+     */
+    public int getQueueDepth(int worker) {
+        Worker w = workers[worker];
+        return w.deque.size() + w.inbox.size();
+    }
+
+    /**
+     * @return the number of tasks the worker took from other workers' deques and inboxes
+     */
+    public long getStealCount(int worker) {
+        return workers[worker].steals;
+    }
+
+    /**
+     * @return the number of tasks the worker has run
+     */
+    public long getCompletedTaskCount(int worker) {
+        return workers[worker].completed;
+    }
+
+    public int getQueuedTaskCount() {
+        int n = 0;
+        for (int i = 0; i < workers.length; i++) {
+            n += getQueueDepth(i);
+        }
+        return n;
+    }
+
+    public long getStealCount() {
+        long n = 0;
+        for (Worker w : workers) {
+            n += w.steals;
+        }
+        return n;
+    }
+
+    public long getCompletedTaskCount() {
+        long n = 0;
+        for (Worker w : workers) {
+            n += w.completed;
+        }
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        final int s = state;
+        final String runState = isTerminated() ? "Terminated" : s == RUNNING ? "Running" : "Shutting down";
+        return super.toString() + "[" + runState + ", parallelism = " + workers.length
+                + ", queued tasks = " + getQueuedTaskCount() + ", steals = " + getStealCount()
+                + ", completed tasks = " + getCompletedTaskCount() + "]";
+    }
+
+    private final class Worker implements Runnable {
+
+        final TaskDeque deque = new TaskDeque();
+        /** Tasks submitted from outside the pool to this worker. */
+        final Queue<Runnable> inbox = new ConcurrentLinkedQueue<>();
+        Thread thread;
+        /** Cleared by whoever unparks this worker. */
+        volatile boolean parked;
+        /** Written by this worker only. */
+        volatile long steals;
+        /** Written by this worker only. */
+        volatile long completed;
+
+        WorkStealingExecutor owner() {
+            return WorkStealingExecutor.this;
+        }
+
+        @Override
+        public void run() {
+            runWorker(this);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.chuan.concurrent.multithreads.order;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The argument checks and failure handling shared by the orderings.
+ *
+ * @author hechuan
+ */
+abstract class AbstractStageOrdering implements StageOrdering {
+
+    final int stages;
+    final ThreadFactory threadFactory;
+
+    AbstractStageOrdering(int stages, ThreadFactory threadFactory) {
+        if (stages < 2) { throw new IllegalArgumentException("Stages must be at least 2!"); }
+        if (threadFactory == null) { throw new NullPointerException(); }
+        this.stages = stages;
+        this.threadFactory = threadFactory;
+    }
+
+    @Override
+    public int stages() {
+        return stages;
+    }
+
+    final void checkRun(Runnable[] actions, int repetitions) {
+        if (actions.length != stages) { throw new IllegalArgumentException("Expected " + stages + " stages!"); }
+        for (Runnable action : actions) {
+            if (action == null) { throw new NullPointerException(); }
+        }
+        if (repetitions < 0) { throw new IllegalArgumentException("Repetitions must not be negative!"); }
+    }
+
+    static void rethrow(Throwable failure) {
+        if (failure == null) { return; }
+        if (failure instanceof RuntimeException) { throw (RuntimeException) failure; }
+        if (failure instanceof Error) { throw (Error) failure; }
+        throw new StageFailedException(failure);
+    }
+}
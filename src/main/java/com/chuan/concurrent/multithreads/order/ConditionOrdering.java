@@ -0,0 +1,69 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 5. Condition: one lock with a condition per stage, a hand-over sets the turn and signals the successor's condition.
+ *
+ * @author hechuan
+ */
+public class ConditionOrdering extends StageThreadOrdering {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] conditions;
+    /** The stage allowed to run, guarded by lock. */
+    private int turn;
+
+    public ConditionOrdering(int stages) {
+        this(stages, new MyThreadFactory());
+    }
+
+    public ConditionOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+        conditions = new Condition[stages];
+        for (int i = 0; i < stages; i++) {
+            conditions[i] = lock.newCondition();
+        }
+    }
+
+    @Override
+    void awaitTurn(int stage) throws InterruptedException {
+        final ReentrantLock lock = this.lock;
+        lock.lockInterruptibly();
+        try {
+            while (turn != stage) {
+                conditions[stage].await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void handOver(int stage) {
+        final int next = stage + 1 == stages ? 0 : stage + 1;
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            turn = next;
+            conditions[next].signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void reset() {
+        final ReentrantLock lock = this.lock;
+        lock.lock();
+        try {
+            turn = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 6. CountDownLatch: every stage waits on a latch of its own that the predecessor counts down. A latch can not be
+ * reset, so a stage replaces its latch as soon as it passed it; the predecessor can only count down again a full cycle
+ * later, by when the new latch is in place.
+ *
+ * @author hechuan
+ */
+public class CountDownLatchOrdering extends StageThreadOrdering {
+
+    private final AtomicReferenceArray<CountDownLatch> latches;
+
+    public CountDownLatchOrdering(int stages) {
+        this(stages, new MyThreadFactory());
+    }
+
+    public CountDownLatchOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+        latches = new AtomicReferenceArray<>(stages);
+        reset();
+    }
+
+    @Override
+    void awaitTurn(int stage) throws InterruptedException {
+        latches.get(stage).await();
+        latches.set(stage, new CountDownLatch(1));
+    }
+
+    @Override
+    void handOver(int stage) {
+        latches.get(stage + 1 == stages ? 0 : stage + 1).countDown();
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < stages; i++) {
+            latches.set(i, new CountDownLatch(1));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 7. CyclicBarrier: a two-party barrier between every stage and its successor, passed by the stage after it ran and by
+ * the successor before it runs. Unlike the other orderings the hand-over blocks too, until the successor arrives.
+ *
+ * @author hechuan
+ */
+public class CyclicBarrierOrdering extends StageThreadOrdering {
+
+    /** barriers[i] stands between stage i-1 and stage i. */
+    private final CyclicBarrier[] barriers;
+
+    public CyclicBarrierOrdering(int stages) {
+        this(stages, new MyThreadFactory());
+    }
+
+    public CyclicBarrierOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+        barriers = new CyclicBarrier[stages];
+        for (int i = 0; i < stages; i++) {
+            barriers[i] = new CyclicBarrier(2);
+        }
+    }
+
+    @Override
+    void awaitTurn(int stage) throws Exception {
+        barriers[stage].await();
+    }
+
+    @Override
+    void handOver(int stage) throws Exception {
+        barriers[stage + 1 == stages ? 0 : stage + 1].await();
+    }
+
+    @Override
+    public void reset() {
+        for (CyclicBarrier barrier : barriers) {
+            barrier.reset();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 1. Thread.join: every repetition starts a thread per stage, and each thread joins its predecessor's thread before
+ * it runs. A thread can only be joined once it terminated, so this costs a thread start and exit per stage.
+ *
+ * @author hechuan
+ */
+public class JoinOrdering extends AbstractStageOrdering {
+
+    public JoinOrdering(int stages) {
+        this(stages, new MyThreadFactory());
+    }
+
+    public JoinOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+    }
+
+    @Override
+    public void run(Runnable[] actions, int repetitions) throws InterruptedException {
+        checkRun(actions, repetitions);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread previous = null;
+        for (int rep = 0; rep < repetitions && failure.get() == null; rep++) {
+            final Thread[] threads = new Thread[stages];
+            for (int i = 0; i < stages; i++) {
+                final Thread predecessor = i == 0 ? previous : threads[i - 1];
+                final Runnable action = actions[i];
+                threads[i] = threadFactory.newThread(() -> {
+                    try {
+                        if (predecessor != null) { predecessor.join(); }
+                        if (failure.get() == null) { action.run(); }
+                    } catch (Throwable ex) {
+                        failure.compareAndSet(null, ex);
+                    }
+                });
+            }
+            // Joining a thread that has not started yet returns at once, so start them in order.
+            for (Thread t : threads) {
+                t.start();
+            }
+            previous = threads[stages - 1];
+            try {
+                previous.join();
+            } catch (InterruptedException e) {
+                for (Thread t : threads) {
+                    t.interrupt();
+                }
+                throw e;
+            }
+        }
+        rethrow(failure.get());
+    }
+
+    @Override
+    public void reset() {
+    }
+}
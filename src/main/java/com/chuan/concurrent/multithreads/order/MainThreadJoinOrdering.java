@@ -0,0 +1,52 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 2. Thread.join in the calling thread: it starts the thread of one stage at a time and joins it before it starts the
+ * next.
+ *
+ * @author hechuan
+ */
+public class MainThreadJoinOrdering extends AbstractStageOrdering {
+
+    public MainThreadJoinOrdering(int stages) {
+        this(stages, new MyThreadFactory());
+    }
+
+    public MainThreadJoinOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+    }
+
+    @Override
+    public void run(Runnable[] actions, int repetitions) throws InterruptedException {
+        checkRun(actions, repetitions);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int rep = 0; rep < repetitions; rep++) {
+            for (Runnable action : actions) {
+                final Thread t = threadFactory.newThread(() -> {
+                    try {
+                        action.run();
+                    } catch (Throwable ex) {
+                        failure.set(ex);
+                    }
+                });
+                t.start();
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    t.interrupt();
+                    throw e;
+                }
+                rethrow(failure.get());
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+    }
+}
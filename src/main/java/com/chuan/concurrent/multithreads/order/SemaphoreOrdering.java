@@ -0,0 +1,45 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 8. Semaphore: a semaphore per stage without permits, the predecessor releases one permit to let the stage run.
+ *
+ * @author hechuan
+ */
+public class SemaphoreOrdering extends StageThreadOrdering {
+
+    private final Semaphore[] semaphores;
+
+    public SemaphoreOrdering(int stages) {
+        this(stages, new MyThreadFactory());
+    }
+
+    public SemaphoreOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+        semaphores = new Semaphore[stages];
+        for (int i = 0; i < stages; i++) {
+            semaphores[i] = new Semaphore(0);
+        }
+    }
+
+    @Override
+    void awaitTurn(int stage) throws InterruptedException {
+        semaphores[stage].acquire();
+    }
+
+    @Override
+    void handOver(int stage) {
+        semaphores[stage + 1 == stages ? 0 : stage + 1].release();
+    }
+
+    @Override
+    public void reset() {
+        for (Semaphore semaphore : semaphores) {
+            semaphore.drainPermits();
+        }
+    }
+}
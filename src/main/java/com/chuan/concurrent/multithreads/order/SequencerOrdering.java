@@ -0,0 +1,55 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+import com.chuan.concurrent.multithreads.RoundRobinSequencer;
+import com.chuan.concurrent.multithreads.WaitStrategy;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * Not one of the eight: a {@link RoundRobinSequencer}, one volatile turn counter for all stages, as the baseline the
+ * others compare against.
+ *
+ * @author hechuan
+ */
+public class SequencerOrdering extends StageThreadOrdering {
+
+    static final int DEFAULT_SPINS = 100;
+
+    private final Supplier<WaitStrategy> strategies;
+    /** Replaced by reset, a sequencer's turn only moves forward. */
+    private volatile RoundRobinSequencer sequencer;
+
+    /**
+     * Waits with {@link WaitStrategy#spinThenPark(int)}.
+     */
+    public SequencerOrdering(int stages) {
+        this(stages, new MyThreadFactory(), () -> WaitStrategy.spinThenPark(DEFAULT_SPINS));
+    }
+
+    /**
+     * @param strategies supplies a fresh wait strategy for every run
+     */
+    public SequencerOrdering(int stages, ThreadFactory threadFactory, Supplier<WaitStrategy> strategies) {
+        super(stages, threadFactory);
+        if (strategies == null) { throw new NullPointerException(); }
+        this.strategies = strategies;
+        reset();
+    }
+
+    @Override
+    void awaitTurn(int stage) throws InterruptedException {
+        sequencer.awaitTurn(stage);
+    }
+
+    @Override
+    void handOver(int stage) {
+        sequencer.advance(stage);
+    }
+
+    @Override
+    public void reset() {
+        sequencer = new RoundRobinSequencer(stages, strategies.get());
+    }
+}
@@ -0,0 +1,73 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 4. Single-thread executor: all stages are queued to one worker thread, whose FIFO queue is the order. The stages
+ * share that thread instead of having one each, and it lives from construction until {@link #close()}.
+ *
+ * @author hechuan
+ */
+public class SingleThreadExecutorOrdering extends AbstractStageOrdering {
+
+    private final ExecutorService executor;
+
+    public SingleThreadExecutorOrdering(int stages) {
+        this(stages, new MyThreadFactory());
+    }
+
+    public SingleThreadExecutorOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+        // What Executors.newSingleThreadExecutor builds, with the given thread factory.
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                threadFactory);
+    }
+
+    @Override
+    public void run(Runnable[] actions, int repetitions) throws InterruptedException {
+        checkRun(actions, repetitions);
+        if (repetitions == 0) { return; }
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Future<?> last = null;
+        try {
+            for (int rep = 0; rep < repetitions; rep++) {
+                for (Runnable action : actions) {
+                    last = executor.submit(() -> {
+                        if (failure.get() != null) { return; }
+                        try {
+                            action.run();
+                        } catch (Throwable ex) {
+                            failure.compareAndSet(null, ex);
+                        }
+                    });
+                }
+            }
+            last.get();
+        } catch (InterruptedException e) {
+            // Let the queued stages of this run fall through.
+            failure.compareAndSet(null, e);
+            throw e;
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+        }
+        rethrow(failure.get());
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,16 @@
+package com.chuan.concurrent.multithreads.order;
+
+/**
+ * Thrown by {@link StageOrdering#run(Runnable[], int)} when a stage threw a checked exception, or a synchronizer
+ * failed for a reason other than an interrupt.
+ *
+ * @author hechuan
+ */
+public class StageFailedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StageFailedException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,39 @@
+package com.chuan.concurrent.multithreads.order;
+
+/**
+ * A way to run stages strictly one after another, each on a thread of its own: the eight hand-off primitives of
+ * {@link com.chuan.concurrent.multithreads.ThreadsRunInOrder} behind one interface, so that they can be reused and
+ * measured against each other.
+ *
+ * An instance is created for a fixed number of stages and owns its synchronizers, none of them static. It can run any
+ * number of times, but one run at a time.
+ *
+ * @author hechuan
+ */
+public interface StageOrdering extends AutoCloseable {
+
+    /**
+     * Runs the stages in order, repetitions times over: stage i of a repetition starts after stage i-1 ended, and
+     * stage 0 after the last stage of the previous repetition. Returns once the last stage of the last repetition
+     * ended. If a stage throws, the remaining stages do not run and the exception is rethrown here, wrapped in a
+     * {@link StageFailedException} if it is checked.
+     *
+     * @param stages exactly {@link #stages()} actions
+     */
+    void run(Runnable[] stages, int repetitions) throws InterruptedException;
+
+    /**
+     * Puts the synchronizers back into their initial state, for example after a run was interrupted halfway.
+     * {@link #run(Runnable[], int)} calls it before it starts.
+     */
+    void reset();
+
+    int stages();
+
+    /**
+     * Releases threads the ordering keeps between runs, if any.
+     */
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,72 @@
+package com.chuan.concurrent.multithreads.order;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Base of the orderings that give every stage one thread for the whole run, looping over the repetitions. Each
+ * subclass only says how stage i waits for its predecessor and how it hands over to its successor; stage 0 of the
+ * first repetition does not wait and the last stage of the last repetition does not hand over, so every hand-over
+ * is matched by exactly one wait and a finished run leaves the synchronizers as it found them.
+ *
+ * @author hechuan
+ */
+abstract class StageThreadOrdering extends AbstractStageOrdering {
+
+    StageThreadOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+    }
+
+    /**
+     * Waits until the predecessor of the stage handed over.
+     */
+    abstract void awaitTurn(int stage) throws Exception;
+
+    /**
+     * Lets the successor of the stage, stage 0 after the last one, start.
+     */
+    abstract void handOver(int stage) throws Exception;
+
+    @Override
+    public final void run(Runnable[] actions, int repetitions) throws InterruptedException {
+        checkRun(actions, repetitions);
+        if (repetitions == 0) { return; }
+        reset();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] threads = new Thread[stages];
+        for (int i = 0; i < stages; i++) {
+            final int stage = i;
+            threads[i] = threadFactory.newThread(() -> {
+                try {
+                    for (int rep = 0; rep < repetitions; rep++) {
+                        if (rep > 0 || stage > 0) { awaitTurn(stage); }
+                        actions[stage].run();
+                        if (rep < repetitions - 1 || stage < stages - 1) { handOver(stage); }
+                    }
+                } catch (Throwable ex) {
+                    // Stop the other stages, they would wait for this one forever.
+                    if (failure.compareAndSet(null, ex)) { interruptAll(threads); }
+                }
+            });
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        try {
+            for (Thread t : threads) {
+                t.join();
+            }
+        } catch (InterruptedException e) {
+            interruptAll(threads);
+            throw e;
+        }
+        rethrow(failure.get());
+    }
+
+    private static void interruptAll(Thread[] threads) {
+        final Thread current = Thread.currentThread();
+        for (Thread t : threads) {
+            if (t != current) { t.interrupt(); }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.chuan.concurrent.multithreads.order;
+
+import com.chuan.concurrent.multithreads.MyThreadFactory;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 3. wait/notify: every stage waits on a monitor of its own until the turn is its, the predecessor sets the turn and
+ * notifies under that monitor, so a hand-over wakes the one thread that can proceed.
+ *
+ * @author hechuan
+ */
+public class WaitNotifyOrdering extends StageThreadOrdering {
+
+    private final Object[] monitors;
+    /** The stage allowed to run, written under the monitor of that stage. */
+    private volatile int turn;
+
+    public WaitNotifyOrdering(int stages) {
+        this(stages, new MyThreadFactory());
+    }
+
+    public WaitNotifyOrdering(int stages, ThreadFactory threadFactory) {
+        super(stages, threadFactory);
+        monitors = new Object[stages];
+        for (int i = 0; i < stages; i++) {
+            monitors[i] = new Object();
+        }
+    }
+
+    @Override
+    void awaitTurn(int stage) throws InterruptedException {
+        final Object monitor = monitors[stage];
+        synchronized (monitor) {
+            while (turn != stage) {
+                monitor.wait();
+            }
+        }
+    }
+
+    @Override
+    void handOver(int stage) {
+        final int next = stage + 1 == stages ? 0 : stage + 1;
+        final Object monitor = monitors[next];
+        synchronized (monitor) {
+            turn = next;
+            monitor.notify();
+        }
+    }
+
+    @Override
+    public void reset() {
+        turn = 0;
+    }
+}